@@ -0,0 +1,28 @@
+package com.company.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Without a scheduler bean all @Scheduled jobs share a single thread, and a paced attach GC or migration
+ * batch would hold up the view flush, trending apply and every other job for its whole run.
+ * One thread per job keeps them independent; a fixed delay job still never overlaps itself.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    @Value("${scheduler.pool-size:16}")
+    private int poolSize;
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduled-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+}
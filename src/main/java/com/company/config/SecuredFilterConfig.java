@@ -42,6 +42,8 @@ public class SecuredFilterConfig {
 
         bean.addUrlPatterns("/playlist-video/public/*");
 
+        bean.addUrlPatterns("/video-tag/public/*");
+
         return bean;
     }
 
@@ -0,0 +1,92 @@
+package com.company.config;
+
+import com.company.exception.AppBadRequestException;
+import com.company.service.UploadAdmissionService;
+import com.company.util.JwtUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.GenericFilterBean;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Admits POST/PUT ingest requests before their body is read: the profile must have byte budget left,
+ * then a global upload slot is taken. The body is charged to the profile while it is copied, once the slot
+ * is granted. Rejected requests get 429 with Retry-After right away.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UploadAdmissionFilter extends GenericFilterBean {
+
+    private final UploadAdmissionService uploadAdmissionService;
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        final HttpServletRequest request = (HttpServletRequest) servletRequest;
+        final HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+        if (!request.getMethod().equals("POST") && !request.getMethod().equals("PUT")) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String key = getClientKey(request);
+        long retryAfter = uploadAdmissionService.checkProfile(key);
+        if (retryAfter > 0) {
+            log.warn("Upload budget exceeded {}", key);
+            reject(response, retryAfter);
+            return;
+        }
+
+        try {
+            retryAfter = uploadAdmissionService.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(response, 1);
+            return;
+        }
+        if (retryAfter > 0) {
+            log.warn("Upload queue full {}", key);
+            reject(response, retryAfter);
+            return;
+        }
+
+        try {
+            uploadAdmissionService.bind(key);
+            filterChain.doFilter(request, response);
+        } finally {
+            uploadAdmissionService.release();
+        }
+    }
+
+    /**
+     * Profile id when a valid token is sent, the client ip otherwise.
+     */
+    private String getClientKey(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                return "profile:" + JwtUtil.decodeAndGetId(authHeader.substring(7).trim());
+            } catch (AppBadRequestException e) {
+                // anonymous
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, long retryAfter) {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setHeader("Message", "Too many uploads!");
+    }
+}
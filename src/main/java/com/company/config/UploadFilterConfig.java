@@ -0,0 +1,24 @@
+package com.company.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@RequiredArgsConstructor
+public class UploadFilterConfig {
+
+    private final UploadAdmissionFilter uploadAdmissionFilter;
+
+    @Bean
+    public FilterRegistrationBean uploadAdmissionFilterRegistrationBean() {
+        FilterRegistrationBean bean = new FilterRegistrationBean();
+        bean.setFilter(uploadAdmissionFilter);
+
+        bean.addUrlPatterns("/attach/upload");
+        bean.addUrlPatterns("/attach/session/*");
+
+        return bean;
+    }
+}
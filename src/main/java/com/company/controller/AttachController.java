@@ -8,9 +8,11 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.Authorization;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
@@ -38,16 +40,34 @@ public class AttachController {
 
     @ApiOperation(value = "Open", notes = "Method used for open files")
     @GetMapping(value = "/open/{id}", produces = MediaType.ALL_VALUE)
-    public byte[] open(@PathVariable("id") String id) {
-        log.info("/open/{id} {}", id);
-        return attachService.open(id);
+    public ResponseEntity<Resource> open(@PathVariable("id") String id,
+                                         @RequestParam(value = "w", required = false) Integer width,
+                                         WebRequest request) {
+        log.info("/open/{id} {} w={}", id, width);
+        return attachService.open(id, width, request);
+    }
+
+    @ApiOperation(value = "Open Signed", notes = "Method used for open files by signed url")
+    @GetMapping(value = "/open/s/{token}", produces = MediaType.ALL_VALUE)
+    public ResponseEntity<Resource> openSigned(@PathVariable("token") String token,
+                                               @RequestParam(value = "w", required = false) Integer width,
+                                               WebRequest request) {
+        log.info("/open/s/{token} w={}", width);
+        return attachService.openSigned(token, width, request);
     }
 
     @ApiOperation(value = "Download", notes = "Method used for download files")
     @GetMapping("/download/{id}")
-    public ResponseEntity<?> download(@PathVariable("id") String id) {
+    public ResponseEntity<Resource> download(@PathVariable("id") String id, WebRequest request) {
         log.info("/download/{id} {}", id);
-        return attachService.download(id);
+        return attachService.download(id, request);
+    }
+
+    @ApiOperation(value = "Download Signed", notes = "Method used for download files by signed url")
+    @GetMapping("/download/s/{token}")
+    public ResponseEntity<Resource> downloadSigned(@PathVariable("token") String token, WebRequest request) {
+        log.info("/download/s/{token}");
+        return attachService.downloadSigned(token, request);
     }
 
     /**
@@ -65,6 +85,24 @@ public class AttachController {
         return ResponseEntity.ok(attachService.list(page, size));
     }
 
+    @ApiOperation(value = "Cache Stats", notes = "Method used for get hot attach cache metrics",
+            authorizations = @Authorization(value = "JWT Token"))
+    @GetMapping("/adm/cache")
+    public ResponseEntity<?> cacheStats(HttpServletRequest request) {
+        log.info("/adm/cache");
+        JwtUtil.getIdFromHeader(request, ProfileRole.ADMIN);
+        return ResponseEntity.ok(attachService.getCacheStats());
+    }
+
+    @ApiOperation(value = "Upload Stats", notes = "Method used for get upload admission limits and queue depth",
+            authorizations = @Authorization(value = "JWT Token"))
+    @GetMapping("/adm/upload")
+    public ResponseEntity<?> uploadStats(HttpServletRequest request) {
+        log.info("/adm/upload");
+        JwtUtil.getIdFromHeader(request, ProfileRole.ADMIN);
+        return ResponseEntity.ok(attachService.getUploadStats());
+    }
+
     @ApiOperation(value = "Delete", notes = "Method used for delete files from local and database",
             authorizations = @Authorization(value = "JWT Token"))
     @DeleteMapping("/adm/{id}")
@@ -0,0 +1,65 @@
+package com.company.controller;
+
+import com.company.dto.UploadSessionDTO;
+import com.company.service.UploadSessionService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import java.io.IOException;
+
+@Slf4j
+@RestController
+@RequestMapping("/attach/session")
+@RequiredArgsConstructor
+@Api(tags = "Upload Session")
+public class UploadSessionController {
+
+    private final UploadSessionService uploadSessionService;
+
+    /**
+     * PUBLIC
+     */
+
+    @ApiOperation(value = "Create", notes = "Method used for start resumable upload")
+    @PostMapping("")
+    public ResponseEntity<?> create(@RequestBody @Valid UploadSessionDTO dto) {
+        log.info("CREATE {}", dto);
+        return ResponseEntity.ok(uploadSessionService.create(dto));
+    }
+
+    @ApiOperation(value = "Chunk", notes = "Method used for upload one chunk of file from given offset")
+    @PutMapping("/{id}")
+    public ResponseEntity<?> writeChunk(@PathVariable("id") String id,
+                                        @RequestParam("offset") long offset,
+                                        HttpServletRequest request) throws IOException {
+        log.info("/session/{id} {} offset={}", id, offset);
+        return ResponseEntity.ok(uploadSessionService.writeChunk(id, offset, request.getInputStream()));
+    }
+
+    @ApiOperation(value = "Get", notes = "Method used for get received ranges of upload")
+    @GetMapping("/{id}")
+    public ResponseEntity<?> get(@PathVariable("id") String id) {
+        log.info("/session/{id} {}", id);
+        return ResponseEntity.ok(uploadSessionService.get(id));
+    }
+
+    @ApiOperation(value = "Finish", notes = "Method used for finish upload and create attach")
+    @PostMapping("/{id}/finish")
+    public ResponseEntity<?> finish(@PathVariable("id") String id) {
+        log.info("/session/{id}/finish {}", id);
+        return ResponseEntity.ok(uploadSessionService.finish(id));
+    }
+
+    @ApiOperation(value = "Delete", notes = "Method used for cancel upload")
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> delete(@PathVariable("id") String id) {
+        log.info("DELETE {}", id);
+        return ResponseEntity.ok(uploadSessionService.delete(id));
+    }
+}
@@ -5,6 +5,8 @@ import com.company.dto.VideoAboutDTO;
 import com.company.dto.VideoDTO;
 import com.company.dto.VideoPreviewPhotoDTO;
 import com.company.enums.ProfileRole;
+import com.company.enums.VideoType;
+import com.company.exception.AppBadRequestException;
 import com.company.service.VideoService;
 import com.company.util.JwtUtil;
 import io.swagger.annotations.Api;
@@ -12,11 +14,13 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.Authorization;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -61,16 +65,27 @@ public class VideoController {
 
     @ApiOperation(value = "Searching by title", notes = "Method used for get search videos")
     @GetMapping("/search")
-    public ResponseEntity<?> searchResult(@RequestParam(value = "search") String search) {
-        log.info("/search {}", search);
-        return ResponseEntity.ok(videoService.searchResult(search));
+    public ResponseEntity<?> searchResult(@RequestParam(value = "search") String search,
+                                          @RequestParam(value = "page", defaultValue = "0") int page,
+                                          @RequestParam(value = "size", defaultValue = "10") int size) {
+        log.info("/search {} page={} size={}", search, page, size);
+        return ResponseEntity.ok(videoService.searchResult(search, page, size));
+    }
+
+    @ApiOperation(value = "Suggest", notes = "Method used for search as you type suggestions")
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggest(@RequestParam(value = "q") String query,
+                                     @RequestParam(value = "size", defaultValue = "10") int size) {
+        log.info("/suggest {}", query);
+        return ResponseEntity.ok(videoService.suggest(query, size));
     }
 
     @ApiOperation(value = "Increase View Count", notes = "Method used for increase video count")
     @PutMapping("/view/{videoId}")
-    public ResponseEntity<?> increaseViewCount(@PathVariable("videoId") String videoId) {
+    public ResponseEntity<?> increaseViewCount(@PathVariable("videoId") String videoId,
+                                               HttpServletRequest request) {
         log.info("/view/{videoId} {}", videoId);
-        videoService.updateViewCount(videoId);
+        videoService.updateViewCount(videoId, getViewer(request));
         return ResponseEntity.ok().build();
     }
 
@@ -92,6 +107,33 @@ public class VideoController {
         return ResponseEntity.ok(videoService.paginationByCategoryId(page, size, categoryId));
     }
 
+    @ApiOperation(value = "Trending", notes = "Method used for get trending videos by category and type")
+    @GetMapping("/trending")
+    public ResponseEntity<?> trending(@RequestParam(value = "categoryId", required = false) String categoryId,
+                                      @RequestParam(value = "type", required = false) VideoType type,
+                                      @RequestParam(value = "size", defaultValue = "10") int size) {
+        log.info("/trending category={} type={} size={}", categoryId, type, size);
+        return ResponseEntity.ok(videoService.trending(categoryId, type, size));
+    }
+
+    @ApiOperation(value = "Related", notes = "Method used for get videos related to the video")
+    @GetMapping("/related/{videoId}")
+    public ResponseEntity<?> related(@PathVariable("videoId") String videoId,
+                                     @RequestParam(value = "size", defaultValue = "10") int size) {
+        log.info("/related/{videoId} {} size={}", videoId, size);
+        return ResponseEntity.ok(videoService.related(videoId, size));
+    }
+
+    @ApiOperation(value = "List By Tag", notes = "Method used for get list of videos having all or any of the tags")
+    @GetMapping("/tag")
+    public ResponseEntity<?> paginationByTagId(@RequestParam(value = "tagId") List<String> tagIdList,
+                                               @RequestParam(value = "match", defaultValue = "and") String match,
+                                               @RequestParam(value = "page", defaultValue = "0") int page,
+                                               @RequestParam(value = "size", defaultValue = "5") int size) {
+        log.info("/tag tags={} match={} page={} size={}", tagIdList, match, page, size);
+        return ResponseEntity.ok(videoService.paginationByTagId(tagIdList, match, page, size));
+    }
+
     @ApiOperation(value = "List By Channel", notes = "Method used for get list of videos by channel id")
     @GetMapping("/channel/{channelId}")
     public ResponseEntity<?> paginationByChannelId(@RequestParam(value = "page", defaultValue = "0") int page,
@@ -101,6 +143,26 @@ public class VideoController {
         return ResponseEntity.ok(videoService.paginationByChannelId(page, size, channelId));
     }
 
+    @ApiOperation(value = "Feed By Category", notes = "Method used for get videos by category id with a cursor")
+    @GetMapping("/category/{categoryId}/feed")
+    public ResponseEntity<?> feedByCategoryId(@RequestParam(value = "cursor", required = false) String cursor,
+                                              @RequestParam(value = "size", defaultValue = "5") int size,
+                                              @RequestParam(value = "count", defaultValue = "false") boolean count,
+                                              @PathVariable("categoryId") String categoryId) {
+        log.info("/category/{categoryId}/feed category={} cursor={} size={}", categoryId, cursor, size);
+        return ResponseEntity.ok(videoService.feedByCategoryId(categoryId, cursor, size, count));
+    }
+
+    @ApiOperation(value = "Feed By Channel", notes = "Method used for get videos by channel id with a cursor")
+    @GetMapping("/channel/{channelId}/feed")
+    public ResponseEntity<?> feedByChannelId(@RequestParam(value = "cursor", required = false) String cursor,
+                                             @RequestParam(value = "size", defaultValue = "5") int size,
+                                             @RequestParam(value = "count", defaultValue = "false") boolean count,
+                                             @PathVariable("channelId") String channelId) {
+        log.info("/channel/{channelId}/feed channel={} cursor={} size={}", channelId, cursor, size);
+        return ResponseEntity.ok(videoService.feedByChannelId(channelId, cursor, size, count));
+    }
+
     @ApiOperation(value = "Preview Photo", notes = "Method used for update preview photo to video",
             authorizations = @Authorization(value = "JWT Token"))
     @PutMapping("/public/preview-photo/{videoId}")
@@ -139,4 +201,18 @@ public class VideoController {
         return ResponseEntity.ok(videoService.pagination(page, size));
     }
 
+    /**
+     * Profile id when a valid token is sent, otherwise a fingerprint of client address and user agent.
+     */
+    private String getViewer(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                return JwtUtil.decodeAndGetId(authHeader.substring(7).trim());
+            } catch (AppBadRequestException e) {
+                // anonymous
+            }
+        }
+        return DigestUtils.sha256Hex(request.getRemoteAddr() + "|" + request.getHeader("User-Agent"));
+    }
 }
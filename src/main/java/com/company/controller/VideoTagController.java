@@ -0,0 +1,56 @@
+package com.company.controller;
+
+import com.company.dto.VideoTagDTO;
+import com.company.service.VideoTagService;
+import com.company.util.JwtUtil;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.Authorization;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+
+@Slf4j
+@RestController
+@RequestMapping("/video-tag")
+@RequiredArgsConstructor
+@Api(tags = "Video Tag")
+public class VideoTagController {
+
+    private final VideoTagService videoTagService;
+
+    /**
+     * PUBLIC
+     */
+
+    @ApiOperation(value = "List", notes = "Method used for get tags of video")
+    @GetMapping("/{videoId}")
+    public ResponseEntity<?> videoTagList(@PathVariable("videoId") String videoId) {
+        log.info("/{videoId} {}", videoId);
+        return ResponseEntity.ok(videoTagService.videoTagList(videoId));
+    }
+
+    @ApiOperation(value = "Create", notes = "Method used for add tag to video only owner added",
+            authorizations = @Authorization(value = "JWT Token"))
+    @PostMapping("/public")
+    public ResponseEntity<?> create(@RequestBody @Valid VideoTagDTO dto,
+                                    HttpServletRequest request) {
+        log.info("CREATE {}", dto);
+        return ResponseEntity.ok(videoTagService.create(dto, JwtUtil.getIdFromHeader(request)));
+    }
+
+    @ApiOperation(value = "Delete", notes = "Method used for remove tag from video only owner removed",
+            authorizations = @Authorization(value = "JWT Token"))
+    @DeleteMapping("/public/{videoId}/{tagId}")
+    public ResponseEntity<?> delete(@PathVariable("videoId") String videoId,
+                                    @PathVariable("tagId") String tagId,
+                                    HttpServletRequest request) {
+        log.info("/public/{videoId}/{tagId} {} {}", videoId, tagId);
+        return ResponseEntity.ok(videoTagService.delete(videoId, tagId, JwtUtil.getIdFromHeader(request)));
+    }
+
+}
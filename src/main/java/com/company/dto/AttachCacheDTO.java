@@ -0,0 +1,31 @@
+package com.company.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AttachCacheDTO {
+
+    private Boolean enabled;
+
+    private Boolean offHeap;
+
+    private Integer entries;
+
+    private Long usedBytes;
+
+    private Long maxBytes;
+
+    private Long hits;
+
+    private Long misses;
+
+    private Long evictions;
+
+    private Long rejections;
+}
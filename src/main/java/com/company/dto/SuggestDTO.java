@@ -0,0 +1,25 @@
+package com.company.dto;
+
+import com.company.enums.SuggestType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SuggestDTO {
+
+    private String id;
+
+    private String text;
+
+    private SuggestType type;
+
+}
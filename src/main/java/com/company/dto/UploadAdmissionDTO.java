@@ -0,0 +1,39 @@
+package com.company.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadAdmissionDTO {
+
+    private Integer maxConcurrent;
+
+    private Integer active;
+
+    private Integer maxQueue;
+
+    private Integer queued;
+
+    private Long bytesPerSecond;
+
+    private Long profileBytesPerSecond;
+
+    private Long profileBurstBytes;
+
+    private Integer profileBuckets;
+
+    private Long admitted;
+
+    private Long rejectedQueueFull;
+
+    private Long rejectedTimeout;
+
+    private Long rejectedProfile;
+
+    private Long throttledMillis;
+}
@@ -0,0 +1,34 @@
+package com.company.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadSessionDTO extends BaseDTO {
+
+    @NotBlank(message = "OriginalName required")
+    private String originalName;
+
+    @NotNull(message = "FileSize required")
+    @Positive(message = "Invalid FileSize")
+    private Long fileSize;
+
+    private Long receivedSize;
+
+    private List<UploadChunkDTO> received;
+
+    private Boolean complete;
+
+    private LocalDateTime expiredDate;
+}
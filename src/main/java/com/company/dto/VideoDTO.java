@@ -53,6 +53,8 @@ public class VideoDTO extends BaseDTO {
 
     private Integer viewCount;
 
+    private Long uniqueViewers;
+
     private Integer sharedCount;
 
     private VideoLikeDTO likes;
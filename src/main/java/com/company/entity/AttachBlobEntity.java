@@ -0,0 +1,38 @@
+package com.company.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Stored file content, shared by every attach with the same SHA-256.
+ */
+@Entity
+@Table(name = "attach_blob")
+@Getter
+@Setter
+public class AttachBlobEntity {
+
+    @Id
+    @Column(name = "id", length = 64, nullable = false)
+    private String id;
+
+    @Column(name = "storage_key", nullable = false)
+    private String storageKey;
+
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_date")
+    @CreationTimestamp
+    private LocalDateTime createdDate;
+}
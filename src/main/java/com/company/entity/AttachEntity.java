@@ -26,6 +26,33 @@ public class AttachEntity extends BaseEntity {
     @Column(name = "file_size", nullable = false)
     private Long fileSize;
 
+    /**
+     * seconds
+     */
     @Column
     private Long duration;
+
+    @Column
+    private Integer width;
+
+    @Column
+    private Integer height;
+
+    @Column(length = 64)
+    private String codec;
+
+    @Column(length = 64)
+    private String checksum;
+
+    @Column(name = "storage_key")
+    private String storageKey;
+
+    @Column(columnDefinition = "boolean default true")
+    private Boolean visible = true;
+
+    /**
+     * set when the attach is queued for removal, cleared again when the row has to stay behind
+     */
+    @Column(name = "deleted_date")
+    private LocalDateTime deletedDate;
 }
\ No newline at end of file
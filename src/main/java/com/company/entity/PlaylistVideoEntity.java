@@ -7,7 +7,10 @@ import javax.persistence.*;
 import java.util.UUID;
 
 @Entity
-@Table(name = "playlist_video", uniqueConstraints = @UniqueConstraint(columnNames = {"video_id", "playlist_id"}))
+@Table(name = "playlist_video", uniqueConstraints = @UniqueConstraint(columnNames = {"video_id", "playlist_id"}),
+        indexes = {
+                @Index(columnList = "created_date"),
+                @Index(columnList = "updated_date")})
 @Getter
 @Setter
 public class PlaylistVideoEntity extends BaseEntity {
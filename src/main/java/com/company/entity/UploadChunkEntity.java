@@ -0,0 +1,23 @@
+package com.company.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.UUID;
+
+@Entity
+@Table(name = "upload_chunk", indexes = @Index(columnList = "session_id"))
+@Getter
+@Setter
+public class UploadChunkEntity extends BaseEntity {
+
+    @Column(name = "session_id", nullable = false)
+    private UUID sessionId;
+
+    @Column(name = "start_offset", nullable = false)
+    private Long startOffset;
+
+    @Column(nullable = false)
+    private Long length;
+}
@@ -0,0 +1,34 @@
+package com.company.entity;
+
+import com.company.enums.UploadSessionStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "upload_session")
+@Getter
+@Setter
+public class UploadSessionEntity extends BaseEntity {
+
+    @Column(name = "original_name", nullable = false)
+    private String originalName;
+
+    @Column(nullable = false)
+    private String extension;
+
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    @Column(name = "expired_date", nullable = false)
+    private LocalDateTime expiredDate;
+
+    /**
+     * FINISHING while one finish, delete or cleanup owns the session, chunks are rejected then
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(columnDefinition = "varchar(16) default 'ACTIVE'")
+    private UploadSessionStatus status = UploadSessionStatus.ACTIVE;
+}
@@ -10,7 +10,9 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "video")
+@Table(name = "video", indexes = {
+        @Index(columnList = "category_id, status, visible, published_date DESC, id DESC"),
+        @Index(columnList = "channel_id, status, visible, created_date DESC, id DESC")})
 @Getter
 @Setter
 public class VideoEntity extends BaseEntity {
@@ -23,7 +25,7 @@ public class VideoEntity extends BaseEntity {
 
     @Column(name = "category_id", nullable = false)
     private UUID categoryId;
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id", insertable = false, updatable = false)
     private CategoryEntity category;
 
@@ -9,7 +9,11 @@ import javax.persistence.*;
 import java.util.UUID;
 
 @Entity
-@Table(name = "video_like")
+@Table(name = "video_like", indexes = {
+        @Index(columnList = "video_id, created_date DESC"),
+        @Index(columnList = "profile_id"),
+        @Index(columnList = "created_date"),
+        @Index(columnList = "updated_date")})
 @Getter
 @Setter
 public class VideoLikeEntity extends BaseEntity {
@@ -0,0 +1,27 @@
+package com.company.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.UUID;
+
+@Entity
+@Table(name = "video_tag", uniqueConstraints = @UniqueConstraint(columnNames = {"video_id", "tag_id"}),
+        indexes = @Index(columnList = "tag_id"))
+@Getter
+@Setter
+public class VideoTagEntity extends BaseEntity {
+
+    @Column(name = "video_id", nullable = false)
+    private UUID videoId;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "video_id", insertable = false, updatable = false)
+    private VideoEntity video;
+
+    @Column(name = "tag_id", nullable = false)
+    private UUID tagId;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "tag_id", insertable = false, updatable = false)
+    private TagEntity tag;
+}
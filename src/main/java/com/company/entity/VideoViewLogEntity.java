@@ -0,0 +1,28 @@
+package com.company.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.UUID;
+
+/**
+ * Last view log segment whose counts are committed, one row per log folder. Written in the same transaction
+ * as the counts, so a replay after a crash knows which segments were applied already.
+ */
+@Entity
+@Table(name = "video_view_log")
+@Getter
+@Setter
+public class VideoViewLogEntity {
+
+    @Id
+    @Column(name = "instance_id", nullable = false)
+    private UUID instanceId;
+
+    @Column(name = "segment", nullable = false)
+    private String segment;
+}
@@ -0,0 +1,30 @@
+package com.company.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.UUID;
+
+/**
+ * HyperLogLog registers of the viewers of a video, one row per day plus one for all time.
+ */
+@Entity
+@Table(name = "video_viewer_sketch",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"video_id", "period"}))
+@Getter
+@Setter
+public class VideoViewerSketchEntity extends BaseEntity {
+
+    @Column(name = "video_id", nullable = false)
+    private UUID videoId;
+
+    /**
+     * yyyy-MM-dd, or total
+     */
+    @Column(nullable = false, length = 10)
+    private String period;
+
+    @Column(nullable = false, columnDefinition = "bytea")
+    private byte[] registers;
+}
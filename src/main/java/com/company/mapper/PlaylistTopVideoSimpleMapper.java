@@ -0,0 +1,13 @@
+package com.company.mapper;
+
+public interface PlaylistTopVideoSimpleMapper {
+
+    String getPlaylist_id();
+
+    String getVideo_id();
+
+    String getTitle();
+
+    Long getDuration();
+
+}
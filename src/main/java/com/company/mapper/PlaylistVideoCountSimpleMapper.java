@@ -0,0 +1,11 @@
+package com.company.mapper;
+
+import java.util.UUID;
+
+public interface PlaylistVideoCountSimpleMapper {
+
+    UUID getPlaylistId();
+
+    Long getVideoCount();
+
+}
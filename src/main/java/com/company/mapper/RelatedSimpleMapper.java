@@ -0,0 +1,9 @@
+package com.company.mapper;
+
+public interface RelatedSimpleMapper {
+
+    String getVideo_id();
+
+    Long getWeight();
+
+}
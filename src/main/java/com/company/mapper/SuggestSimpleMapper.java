@@ -0,0 +1,13 @@
+package com.company.mapper;
+
+import java.util.UUID;
+
+public interface SuggestSimpleMapper {
+
+    UUID getId();
+
+    String getName();
+
+    Long getWeight();
+
+}
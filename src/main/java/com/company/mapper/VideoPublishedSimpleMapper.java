@@ -0,0 +1,12 @@
+package com.company.mapper;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface VideoPublishedSimpleMapper {
+
+    UUID getId();
+
+    LocalDateTime getPublishedDate();
+
+}
@@ -0,0 +1,13 @@
+package com.company.mapper;
+
+import java.util.UUID;
+
+public interface VideoTagSimpleMapper {
+
+    UUID getId();
+
+    UUID getVideoId();
+
+    UUID getTagId();
+
+}
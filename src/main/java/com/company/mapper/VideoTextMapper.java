@@ -0,0 +1,12 @@
+package com.company.mapper;
+
+import java.util.UUID;
+
+public interface VideoTextMapper {
+
+    UUID getId();
+
+    String getTitle();
+
+    String getDescription();
+}
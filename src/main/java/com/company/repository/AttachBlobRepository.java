@@ -0,0 +1,50 @@
+package com.company.repository;
+
+import com.company.entity.AttachBlobEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface AttachBlobRepository extends JpaRepository<AttachBlobEntity, String> {
+
+    @Transactional
+    @Modifying
+    @Query("update AttachBlobEntity set refCount = refCount + 1 where id = :id")
+    int increaseRefCount(@Param("id") String id);
+
+    /**
+     * Inserts the blob with one reference, or takes another reference when the checksum is stored already.
+     * One statement, so concurrent uploads of the same bytes can neither overwrite the row nor lose a count.
+     *
+     * @return storage key of the row, not the one passed in when another upload won
+     */
+    @Transactional
+    @Query(value = "insert into attach_blob (id, storage_key, file_size, ref_count, created_date) " +
+            "values (:id, :storageKey, :fileSize, 1, now()) " +
+            "on conflict (id) do update set ref_count = attach_blob.ref_count + 1 " +
+            "returning storage_key", nativeQuery = true)
+    String upsert(@Param("id") String id, @Param("storageKey") String storageKey, @Param("fileSize") long fileSize);
+
+    @Transactional
+    @Modifying
+    @Query("update AttachBlobEntity set refCount = refCount - 1 where id = :id")
+    int decreaseRefCount(@Param("id") String id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from AttachBlobEntity where id = :id and refCount <= 0")
+    int deleteUnreferenced(@Param("id") String id);
+
+    @Query(value = "select * from attach_blob where storage_key !~ '^[0-9a-f]{2}/[0-9a-f]{2}/[^/]+$' " +
+            "and id > :lastId order by id limit :limit", nativeQuery = true)
+    List<AttachBlobEntity> findAllUnsharded(@Param("lastId") String lastId, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("update AttachBlobEntity set storageKey = :newKey where id = :id and storageKey = :oldKey")
+    int updateStorageKey(@Param("id") String id, @Param("oldKey") String oldKey, @Param("newKey") String newKey);
+}
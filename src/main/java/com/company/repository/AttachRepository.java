@@ -1,9 +1,66 @@
 package com.company.repository;
 
 import com.company.entity.AttachEntity;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface AttachRepository extends JpaRepository<AttachEntity, UUID> {
-}
\ No newline at end of file
+
+    Optional<AttachEntity> findByIdAndVisible(UUID id, Boolean visible);
+
+    List<AttachEntity> findAllByIdInAndVisible(Collection<UUID> idList, Boolean visible);
+
+    Page<AttachEntity> findAllByVisible(Boolean visible, Pageable pageable);
+
+    List<AttachEntity> findAllByVisibleAndDeletedDateBefore(Boolean visible, LocalDateTime date, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update AttachEntity set visible = false, deletedDate = :deletedDate where id = :id")
+    int updateVisible(@Param("deletedDate") LocalDateTime deletedDate, @Param("id") UUID id);
+
+    List<AttachEntity> findAllByStorageKeyIsNullAndVisibleAndIdGreaterThan(Boolean visible, UUID id, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update AttachEntity set storageKey = :newKey where storageKey = :oldKey")
+    int updateStorageKey(@Param("oldKey") String oldKey, @Param("newKey") String newKey);
+
+    @Transactional
+    @Modifying
+    @Query("update AttachEntity set storageKey = :storageKey where id = :id and storageKey is null")
+    int updateStorageKey(@Param("storageKey") String storageKey, @Param("id") UUID id);
+
+    @Transactional
+    @Modifying
+    @Query("update AttachEntity set deletedDate = null where id = :id")
+    int clearDeletedDate(@Param("id") UUID id);
+
+    /**
+     * Mark phase of the orphan sweep: hides at most :limit attaches created before :createdBefore
+     * that no video, channel or profile points to. The hidden rows are then purged by the delete worker.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update attach set visible = false, deleted_date = :deletedDate " +
+            "where id in (select a.id from attach a " +
+            "where a.visible = true and a.created_date < :createdBefore " +
+            "and not exists (select 1 from video v where v.attach_id = a.id or v.preview_attach_id = a.id) " +
+            "and not exists (select 1 from channel c where c.photo_id = a.id or c.banner_id = a.id) " +
+            "and not exists (select 1 from profile p where p.attach_id = a.id) " +
+            "limit :limit)", nativeQuery = true)
+    int markOrphans(@Param("createdBefore") LocalDateTime createdBefore,
+                    @Param("deletedDate") LocalDateTime deletedDate,
+                    @Param("limit") int limit);
+}
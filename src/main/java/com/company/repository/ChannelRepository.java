@@ -3,6 +3,8 @@ package com.company.repository;
 import com.company.entity.ChannelEntity;
 import com.company.enums.ChannelStatus;
 import com.company.enums.ProfileStatus;
+import com.company.enums.VideoStatus;
+import com.company.mapper.SuggestSimpleMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -43,4 +45,10 @@ public interface ChannelRepository extends JpaRepository<ChannelEntity, UUID> {
 
     Page<ChannelEntity> findAllByStatus(ChannelStatus status, Pageable pageable);
 
+    @Query("select c.id as id, c.name as name, coalesce(sum(v.viewCount), 0) as weight from ChannelEntity c " +
+            "left join VideoEntity v on v.channelId = c.id and v.status = :videoStatus and v.visible = true " +
+            "where c.status = :status group by c.id, c.name")
+    List<SuggestSimpleMapper> findSuggestList(@Param("status") ChannelStatus status,
+                                              @Param("videoStatus") VideoStatus videoStatus);
+
 }
\ No newline at end of file
@@ -1,11 +1,16 @@
 package com.company.repository;
 
 import com.company.entity.PlaylistVideoEntity;
+import com.company.mapper.PlaylistTopVideoSimpleMapper;
+import com.company.mapper.PlaylistVideoCountSimpleMapper;
+import com.company.mapper.RelatedSimpleMapper;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,4 +29,45 @@ public interface PlaylistVideoRepository extends JpaRepository<PlaylistVideoEnti
     @Query(value = "select * from playlist_video where playlist_id = :playlistId order by order_num limit 2"
             , nativeQuery = true)
     List<PlaylistVideoEntity> getTop2VideoByPlaylistId(@Param("playlistId") UUID playlistId);
+
+    /**
+     * Playlist rows of a page of videos with their playlists, oldest first.
+     */
+    @Query("select pv from PlaylistVideoEntity pv join fetch pv.playlist where pv.videoId in :videoIds " +
+            "order by pv.createdDate")
+    List<PlaylistVideoEntity> findAllByVideoIdIn(@Param("videoIds") Collection<UUID> videoIds);
+
+    @Query("select pv.playlistId as playlistId, count(pv.id) as videoCount from PlaylistVideoEntity pv " +
+            "where pv.playlistId in :playlistIds group by pv.playlistId")
+    List<PlaylistVideoCountSimpleMapper> getVideoCountByPlaylistIdIn(@Param("playlistIds") Collection<UUID> playlistIds);
+
+    @Query(value = "select CAST(t.playlist_id as varchar) playlist_id, CAST(t.video_id as varchar) video_id, " +
+            "v.title, v.duration " +
+            "from (select playlist_id, video_id, order_num, " +
+            "row_number() over (partition by playlist_id order by order_num) rn " +
+            "from playlist_video where playlist_id in (:playlistIds)) t " +
+            "join video v on v.id = t.video_id " +
+            "where t.rn <= 2 " +
+            "order by t.playlist_id, t.order_num", nativeQuery = true)
+    List<PlaylistTopVideoSimpleMapper> getTop2VideoByPlaylistIdIn(@Param("playlistIds") Collection<UUID> playlistIds);
+
+    /**
+     * Videos sharing a playlist with this video, by number of common playlists.
+     */
+    @Query(value = "select CAST(p2.video_id as varchar) video_id, count(*) weight " +
+            "from playlist_video p1 " +
+            "join playlist_video p2 on p2.playlist_id = p1.playlist_id and p2.video_id <> p1.video_id " +
+            "where p1.video_id = :videoId " +
+            "group by p2.video_id " +
+            "order by weight desc limit :max", nativeQuery = true)
+    List<RelatedSimpleMapper> getCoPlaylistVideos(@Param("videoId") UUID videoId, @Param("max") int max);
+
+    @Query(value = "select CAST(video_id as varchar) video_id, count(*) weight " +
+            "from playlist_video " +
+            "where video_id in (:videoIds) " +
+            "group by video_id", nativeQuery = true)
+    List<RelatedSimpleMapper> getPlaylistCountByVideoIdIn(@Param("videoIds") Collection<UUID> videoIds);
+
+    @Query("select distinct pv.videoId from PlaylistVideoEntity pv where pv.updatedDate > :since or pv.createdDate > :since")
+    List<UUID> findVideoIdChangedAfter(@Param("since") LocalDateTime since);
 }
\ No newline at end of file
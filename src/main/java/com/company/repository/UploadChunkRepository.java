@@ -0,0 +1,22 @@
+package com.company.repository;
+
+import com.company.entity.UploadChunkEntity;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface UploadChunkRepository extends JpaRepository<UploadChunkEntity, UUID> {
+
+    List<UploadChunkEntity> findAllBySessionId(UUID sessionId, Sort sort);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UploadChunkEntity where sessionId = :sessionId")
+    void deleteAllBySessionId(@Param("sessionId") UUID sessionId);
+}
@@ -0,0 +1,33 @@
+package com.company.repository;
+
+import com.company.entity.UploadSessionEntity;
+import com.company.enums.UploadSessionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSessionEntity, UUID> {
+
+    List<UploadSessionEntity> findAllByExpiredDateBefore(LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("update UploadSessionEntity set expiredDate = :expiredDate where id = :id")
+    void updateExpiredDate(@Param("expiredDate") LocalDateTime expiredDate, @Param("id") UUID id);
+
+    /**
+     * Moves the session from the expected status only, 0 when another request changed it first.
+     */
+    @Transactional
+    @Modifying
+    @Query("update UploadSessionEntity set status = :status, expiredDate = :expiredDate " +
+            "where id = :id and status = :expected")
+    int updateStatus(@Param("status") UploadSessionStatus status, @Param("expiredDate") LocalDateTime expiredDate,
+                     @Param("id") UUID id, @Param("expected") UploadSessionStatus expected);
+}
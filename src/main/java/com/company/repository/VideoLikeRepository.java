@@ -3,12 +3,15 @@ package com.company.repository;
 import com.company.entity.VideoLikeEntity;
 import com.company.mapper.LikeCountSimpleMapper;
 import com.company.mapper.ProfileLikesSimpleMapper;
+import com.company.mapper.RelatedSimpleMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -30,6 +33,28 @@ public interface VideoLikeRepository extends JpaRepository<VideoLikeEntity, UUID
     @Query(value = "select CAST(profile_id as varchar) profile_id,type " +
             "from video_like " +
             "where video_id = :videoId " +
-            "group by type, profile_id", nativeQuery = true)
-    List<ProfileLikesSimpleMapper> getProfileLikesByVideoId(@Param("videoId") UUID videoId);
+            "order by created_date desc", nativeQuery = true)
+    List<ProfileLikesSimpleMapper> getProfileLikesByVideoId(@Param("videoId") UUID videoId, Pageable pageable);
+
+    /**
+     * Videos liked by the latest likers of this video, at most :likers of them, by number of common likers.
+     */
+    @Query(value = "select CAST(l2.video_id as varchar) video_id, count(*) weight " +
+            "from (select profile_id from video_like " +
+            "where video_id = :videoId and type = 'LIKE' " +
+            "order by created_date desc limit :likers) l1 " +
+            "join video_like l2 on l2.profile_id = l1.profile_id and l2.video_id <> :videoId and l2.type = 'LIKE' " +
+            "group by l2.video_id " +
+            "order by weight desc limit :max", nativeQuery = true)
+    List<RelatedSimpleMapper> getCoLikedVideos(@Param("videoId") UUID videoId, @Param("likers") int likers,
+                                               @Param("max") int max);
+
+    @Query(value = "select CAST(video_id as varchar) video_id, count(*) weight " +
+            "from video_like " +
+            "where type = 'LIKE' and video_id in (:videoIds) " +
+            "group by video_id", nativeQuery = true)
+    List<RelatedSimpleMapper> getLikeCountByVideoIdIn(@Param("videoIds") Collection<UUID> videoIds);
+
+    @Query("select distinct l.videoId from VideoLikeEntity l where l.updatedDate > :since or l.createdDate > :since")
+    List<UUID> findVideoIdChangedAfter(@Param("since") LocalDateTime since);
 }
\ No newline at end of file
@@ -2,6 +2,9 @@ package com.company.repository;
 
 import com.company.entity.VideoEntity;
 import com.company.enums.VideoStatus;
+import com.company.mapper.SuggestSimpleMapper;
+import com.company.mapper.VideoPublishedSimpleMapper;
+import com.company.mapper.VideoTextMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -35,10 +38,42 @@ public interface VideoRepository extends JpaRepository<VideoEntity, UUID> {
 
     Page<VideoEntity> findAllByCategoryIdAndStatusAndVisible(UUID categoryId, VideoStatus status, Boolean visible, Pageable pageable);
 
-//    Page<VideoEntity> findAllByTagIdAndStatus(UUID categoryId, VideoStatus status, Pageable pageable);
-
     Page<VideoEntity> findAllByChannelIdAndStatusAndVisible(UUID channelId, VideoStatus status, Boolean visible, Pageable pageable);
 
+    long countByCategoryIdAndStatusAndVisible(UUID categoryId, VideoStatus status, Boolean visible);
+
+    long countByChannelIdAndStatusAndVisible(UUID channelId, VideoStatus status, Boolean visible);
+
+    /**
+     * Category feed seeks, newest published first; the page size comes from the pageable, no count query.
+     */
+    @Query("select v from VideoEntity v where v.categoryId = :categoryId and v.status = :status and v.visible = true " +
+            "and v.publishedDate is not null order by v.publishedDate desc, v.id desc")
+    List<VideoEntity> findCategoryFeed(@Param("categoryId") UUID categoryId, @Param("status") VideoStatus status,
+                                       Pageable pageable);
+
+    @Query("select v from VideoEntity v where v.categoryId = :categoryId and v.status = :status and v.visible = true " +
+            "and (v.publishedDate < :date or (v.publishedDate = :date and v.id < :id)) " +
+            "order by v.publishedDate desc, v.id desc")
+    List<VideoEntity> findCategoryFeedAfter(@Param("categoryId") UUID categoryId, @Param("status") VideoStatus status,
+                                            @Param("date") LocalDateTime date, @Param("id") UUID id,
+                                            Pageable pageable);
+
+    /**
+     * Channel feed seeks, newest created first.
+     */
+    @Query("select v from VideoEntity v where v.channelId = :channelId and v.status = :status and v.visible = true " +
+            "order by v.createdDate desc, v.id desc")
+    List<VideoEntity> findChannelFeed(@Param("channelId") UUID channelId, @Param("status") VideoStatus status,
+                                      Pageable pageable);
+
+    @Query("select v from VideoEntity v where v.channelId = :channelId and v.status = :status and v.visible = true " +
+            "and (v.createdDate < :date or (v.createdDate = :date and v.id < :id)) " +
+            "order by v.createdDate desc, v.id desc")
+    List<VideoEntity> findChannelFeedAfter(@Param("channelId") UUID channelId, @Param("status") VideoStatus status,
+                                           @Param("date") LocalDateTime date, @Param("id") UUID id,
+                                           Pageable pageable);
+
 
     Optional<VideoEntity> findByIdAndVisible(UUID id, Boolean visible);
 
@@ -54,6 +89,37 @@ public interface VideoRepository extends JpaRepository<VideoEntity, UUID> {
     @Query(value = "update VideoEntity set visible = false where id =:id")
     void updateVisible(@Param("id") UUID id);
 
+    /**
+     * Keyset pages of public videos ordered by id, for building the search index.
+     */
+    @Query("select v.id as id, v.title as title, v.description as description from VideoEntity v " +
+            "where v.status = :status and v.visible = true and v.id > :lastId order by v.id")
+    List<VideoTextMapper> findTextPage(@Param("status") VideoStatus status, @Param("lastId") UUID lastId,
+                                       Pageable pageable);
+
+    /**
+     * Keyset pages of public video ids in publish order, for numbering videos in the tag index.
+     */
+    @Query("select v.id as id, v.publishedDate as publishedDate from VideoEntity v " +
+            "where v.status = :status and v.visible = true and v.publishedDate is not null " +
+            "and (v.publishedDate > :date or (v.publishedDate = :date and v.id > :id)) " +
+            "order by v.publishedDate, v.id")
+    List<VideoPublishedSimpleMapper> findPublishedPage(@Param("status") VideoStatus status,
+                                                       @Param("date") LocalDateTime date, @Param("id") UUID id,
+                                                       Pageable pageable);
+
+    @Query("select v.id from VideoEntity v " +
+            "where v.status = :status and v.visible = true and v.publishedDate is null")
+    List<UUID> findUnpublishedDateIds(@Param("status") VideoStatus status);
+
+    /**
+     * Keyset page of public titles weighted by views, for the suggest index.
+     */
+    @Query("select v.id as id, v.title as name, cast(v.viewCount as long) as weight from VideoEntity v " +
+            "where v.status = :status and v.visible = true and v.id > :lastId order by v.id")
+    List<SuggestSimpleMapper> findSuggestPage(@Param("status") VideoStatus status, @Param("lastId") UUID lastId,
+                                              Pageable pageable);
+
     @Transactional
     @Modifying
     @Query(value = "update VideoEntity set previewAttachId = :attachId where id =:id")
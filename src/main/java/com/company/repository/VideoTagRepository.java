@@ -0,0 +1,34 @@
+package com.company.repository;
+
+import com.company.entity.VideoTagEntity;
+import com.company.mapper.VideoTagSimpleMapper;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface VideoTagRepository extends JpaRepository<VideoTagEntity, UUID> {
+
+    Optional<VideoTagEntity> findByVideoIdAndTagId(UUID videoId, UUID tagId);
+
+    @Query("select vt from VideoTagEntity vt join fetch vt.tag where vt.videoId = :videoId order by vt.createdDate")
+    List<VideoTagEntity> findAllByVideoId(@Param("videoId") UUID videoId);
+
+    /**
+     * Keyset pages of all video/tag pairs ordered by id, for building the tag index.
+     */
+    @Query("select vt.id as id, vt.videoId as videoId, vt.tagId as tagId from VideoTagEntity vt " +
+            "where vt.id > :lastId order by vt.id")
+    List<VideoTagSimpleMapper> findPage(@Param("lastId") UUID lastId, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from VideoTagEntity where tagId = :tagId")
+    int deleteAllByTagId(@Param("tagId") UUID tagId);
+}
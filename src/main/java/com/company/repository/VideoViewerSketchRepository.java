@@ -0,0 +1,20 @@
+package com.company.repository;
+
+import com.company.entity.VideoViewerSketchEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface VideoViewerSketchRepository extends JpaRepository<VideoViewerSketchEntity, UUID> {
+
+    Optional<VideoViewerSketchEntity> findByVideoIdAndPeriod(UUID videoId, String period);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<VideoViewerSketchEntity> findForUpdateByVideoIdAndPeriod(UUID videoId, String period);
+
+    List<VideoViewerSketchEntity> findAllByVideoIdAndPeriodBetween(UUID videoId, String from, String to);
+}
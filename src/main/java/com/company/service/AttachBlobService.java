@@ -0,0 +1,67 @@
+package com.company.service;
+
+import com.company.entity.AttachBlobEntity;
+import com.company.repository.AttachBlobRepository;
+import com.company.storage.AttachStorage;
+import com.company.util.StorageKeyUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Content addressed store: one file per distinct SHA-256, shared through a reference count.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttachBlobService {
+
+    private final AttachBlobRepository attachBlobRepository;
+    private final AttachStorage attachStorage;
+
+
+    /**
+     * Takes a reference on the blob with the checksum of the temp file and returns its storage key.
+     * The temp file is handed to the storage only when these bytes are not stored yet.
+     */
+    public String acquire(AttachService.IngestFile ingestFile, String extension) throws IOException {
+        String checksum = ingestFile.getChecksum();
+
+        Optional<AttachBlobEntity> optional = attachBlobRepository.findById(checksum);
+        if (optional.isPresent() && attachBlobRepository.increaseRefCount(checksum) > 0) {
+            return optional.get().getStorageKey();
+        }
+
+        String storageKey = StorageKeyUtil.toShardedKey(UUID.randomUUID() + "." + extension);
+        attachStorage.put(storageKey, ingestFile.getPath());
+
+        String storedKey = attachBlobRepository.upsert(checksum, storageKey, ingestFile.getSize());
+        if (!storageKey.equals(storedKey)) {
+            // the same bytes were stored concurrently, keep that copy
+            attachStorage.delete(storageKey);
+        }
+        return storedKey;
+    }
+
+    /**
+     * Drops one reference; the file is deleted together with the last one.
+     * The key of the blob row wins over the one passed in, it may have been moved by the layout migration.
+     */
+    public boolean release(String checksum, String storageKey) {
+        storageKey = attachBlobRepository.findById(checksum).map(AttachBlobEntity::getStorageKey).orElse(storageKey);
+        attachBlobRepository.decreaseRefCount(checksum);
+        if (attachBlobRepository.deleteUnreferenced(checksum) == 0) {
+            return true;
+        }
+        try {
+            return attachStorage.delete(storageKey);
+        } catch (IOException e) {
+            log.warn("Cannot delete blob {}", storageKey);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.company.service;
+
+import com.company.dto.AttachCacheDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process cache for small attach files, bounded by total bytes.
+ * Entries are kept in LRU order, and a new entry only replaces the LRU victim when it has been requested
+ * more often (TinyLFU admission on a count-min sketch), so one-off requests do not flush hot thumbnails.
+ * <p>
+ * Reads only look up a ConcurrentHashMap and record the key in a lock-free ring buffer, which drops keys
+ * when full, so the sketch sees a sample of the requests under load. The buffer is drained into the LRU order and
+ * the sketch under the lock, by a reader that finds it half full and the lock free, or before an admission.
+ * Only admission, eviction and the byte totals take the lock.
+ */
+@Slf4j
+@Service
+public class AttachCacheService {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 1 << 14;
+    private static final int[] SKETCH_SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+    private static final int ACCESS_BUFFER_SIZE = 1024;
+
+    @Value("${attach.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${attach.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${attach.cache.max-item-bytes:262144}")
+    private long maxItemBytes;
+
+    /**
+     * keep cached bytes in direct buffers, outside of the GC heap
+     */
+    @Value("${attach.cache.off-heap:false}")
+    private boolean offHeap;
+
+    private final Map<String, ByteBuffer> entryMap = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> accessBuffer = new AtomicReferenceArray<>(ACCESS_BUFFER_SIZE);
+    private final AtomicLong accessWrites = new AtomicLong();
+    // written under the lock only
+    private volatile long accessReads;
+
+    // guarded by the lock, entryMap is only changed under it as well
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, ByteBuffer> orderMap = new LinkedHashMap<>(256, 0.75f, true);
+    private final int[][] sketch = new int[SKETCH_DEPTH][SKETCH_WIDTH];
+    private int sketchAdditions;
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+
+    public boolean isCacheable(long size) {
+        return enabled && size <= maxItemBytes && size <= maxBytes;
+    }
+
+    public Resource get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        record(key);
+
+        ByteBuffer buffer = entryMap.get(key);
+        if (buffer == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new ByteBufferResource(buffer, key);
+    }
+
+    /**
+     * Reads the resource into the cache if it is admitted, returns null otherwise.
+     */
+    public Resource load(String key, Resource resource, long size) throws IOException {
+        if (!isCacheable(size) || !admit(key, size)) {
+            return null;
+        }
+
+        ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect((int) size) : ByteBuffer.allocate((int) size);
+        try (ReadableByteChannel channel = resource.readableChannel()) {
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            }
+        }
+        buffer.flip();
+        return put(key, buffer.asReadOnlyBuffer());
+    }
+
+    public void evict(String key) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = orderMap.remove(key);
+            entryMap.remove(key);
+            if (buffer != null) {
+                usedBytes -= buffer.capacity();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public AttachCacheDTO getStats() {
+        AttachCacheDTO dto = new AttachCacheDTO();
+        dto.setEnabled(enabled);
+        dto.setOffHeap(offHeap);
+        lock.lock();
+        try {
+            dto.setEntries(orderMap.size());
+            dto.setUsedBytes(usedBytes);
+        } finally {
+            lock.unlock();
+        }
+        dto.setMaxBytes(maxBytes);
+        dto.setHits(hits.sum());
+        dto.setMisses(misses.sum());
+        dto.setEvictions(evictions.sum());
+        dto.setRejections(rejections.sum());
+        return dto;
+    }
+
+    private void record(String key) {
+        long writes = accessWrites.get();
+        long pending = writes - accessReads;
+        if (pending < ACCESS_BUFFER_SIZE && accessWrites.compareAndSet(writes, writes + 1)) {
+            accessBuffer.lazySet((int) (writes & (ACCESS_BUFFER_SIZE - 1)), key);
+        }
+        if (pending >= ACCESS_BUFFER_SIZE / 2 && lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replays the recorded requests into the LRU order and the sketch, under the lock.
+     */
+    private void drain() {
+        long writes = accessWrites.get();
+        for (long i = accessReads; i < writes; i++) {
+            // a slot claimed but not written yet is skipped, the key is lost
+            String key = accessBuffer.getAndSet((int) (i & (ACCESS_BUFFER_SIZE - 1)), null);
+            if (key != null) {
+                orderMap.get(key);
+                increment(key);
+            }
+        }
+        accessReads = writes;
+    }
+
+    private boolean admit(String key, long size) {
+        lock.lock();
+        try {
+            drain();
+            if (orderMap.containsKey(key)) {
+                return false;
+            }
+            int frequency = frequency(key);
+            long freeBytes = maxBytes - usedBytes;
+
+            Iterator<Map.Entry<String, ByteBuffer>> iterator = orderMap.entrySet().iterator();
+            while (freeBytes < size && iterator.hasNext()) {
+                Map.Entry<String, ByteBuffer> victim = iterator.next();
+                if (frequency(victim.getKey()) >= frequency) {
+                    rejections.increment();
+                    return false;
+                }
+                freeBytes += victim.getValue().capacity();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Resource put(String key, ByteBuffer buffer) {
+        lock.lock();
+        try {
+            Iterator<Map.Entry<String, ByteBuffer>> iterator = orderMap.entrySet().iterator();
+            while (usedBytes + buffer.capacity() > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, ByteBuffer> victim = iterator.next();
+                usedBytes -= victim.getValue().capacity();
+                entryMap.remove(victim.getKey());
+                iterator.remove();
+                evictions.increment();
+            }
+            ByteBuffer old = orderMap.put(key, buffer);
+            entryMap.put(key, buffer);
+            if (old != null) {
+                usedBytes -= old.capacity();
+            }
+            usedBytes += buffer.capacity();
+        } finally {
+            lock.unlock();
+        }
+        return new ByteBufferResource(buffer, key);
+    }
+
+    private void increment(String key) {
+        int hash = key.hashCode();
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            int index = index(hash, i);
+            if (sketch[i][index] < Integer.MAX_VALUE) {
+                sketch[i][index]++;
+            }
+        }
+        // halve all counters periodically so old popularity fades out
+        if (++sketchAdditions >= SKETCH_WIDTH * 10) {
+            for (int[] row : sketch) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] >>>= 1;
+                }
+            }
+            sketchAdditions /= 2;
+        }
+    }
+
+    private int frequency(String key) {
+        int hash = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            min = Math.min(min, sketch[i][index(hash, i)]);
+        }
+        return min;
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SKETCH_SEEDS[row];
+        h ^= h >>> 16;
+        return h & (SKETCH_WIDTH - 1);
+    }
+
+    /**
+     * Read only view over a cached buffer. Every stream gets its own duplicate, so ranges can be read concurrently.
+     */
+    public static class ByteBufferResource extends AbstractResource {
+
+        private final ByteBuffer buffer;
+        private final String key;
+
+        public ByteBufferResource(ByteBuffer buffer, String key) {
+            this.buffer = buffer;
+            this.key = key;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            ByteBuffer view = buffer.duplicate();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return view.hasRemaining() ? view.get() & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] bytes, int off, int len) {
+                    if (!view.hasRemaining()) {
+                        return -1;
+                    }
+                    int count = Math.min(len, view.remaining());
+                    view.get(bytes, off, count);
+                    return count;
+                }
+
+                @Override
+                public long skip(long n) {
+                    int count = (int) Math.max(0, Math.min(n, view.remaining()));
+                    view.position(view.position() + count);
+                    return count;
+                }
+
+                @Override
+                public int available() {
+                    return view.remaining();
+                }
+            };
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public String getDescription() {
+            return "Cached attach [" + key + "]";
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.company.service;
+
+import com.company.entity.AttachEntity;
+import com.company.repository.AttachRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Background removal of attaches. Deleted attaches are only hidden inside the request, their files are
+ * purged here in small batches paced to attach.gc.files-per-second. A periodic sweep hides attaches
+ * that no video, channel or profile points to once they are older than the grace period.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttachCollectorService {
+
+    private final AttachRepository attachRepository;
+    private final AttachService attachService;
+    private final AttachMetaCacheService attachMetaCacheService;
+
+    @Value("${attach.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${attach.gc.batch-size:100}")
+    private int batchSize;
+
+    @Value("${attach.gc.files-per-second:20}")
+    private int filesPerSecond;
+
+    @Value("${attach.gc.grace-hours:24}")
+    private long graceHours;
+
+    @Value("${attach.gc.sweep-enabled:true}")
+    private boolean sweepEnabled;
+
+
+    @Scheduled(initialDelayString = "${attach.gc.delay-ms:60000}", fixedDelayString = "${attach.gc.delay-ms:60000}")
+    public void purgeDeleted() {
+        if (!enabled) {
+            return;
+        }
+        List<AttachEntity> entityList = attachRepository.findAllByVisibleAndDeletedDateBefore(false,
+                LocalDateTime.now(), PageRequest.of(0, batchSize, Sort.by(Sort.Direction.ASC, "deletedDate")));
+
+        long pause = filesPerSecond > 0 ? 1000L / filesPerSecond : 0;
+        int purged = 0;
+        for (AttachEntity entity : entityList) {
+            try {
+                attachService.purge(entity);
+                purged++;
+            } catch (RuntimeException e) {
+                log.warn("Cannot purge attach {} {}", entity.getId(), e.getMessage());
+            }
+            if (!pause(pause)) {
+                break;
+            }
+        }
+        if (purged > 0) {
+            log.info("Deleted attaches purged {}", purged);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${attach.gc.sweep-ms:3600000}", fixedDelayString = "${attach.gc.sweep-ms:3600000}")
+    public void sweepOrphans() {
+        if (!enabled || !sweepEnabled) {
+            return;
+        }
+        int marked = attachRepository.markOrphans(LocalDateTime.now().minusHours(graceHours),
+                LocalDateTime.now(), batchSize);
+        if (marked > 0) {
+            attachMetaCacheService.clear();
+            log.info("Orphan attaches marked {}", marked);
+        }
+    }
+
+    private boolean pause(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
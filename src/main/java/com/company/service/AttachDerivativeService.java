@@ -0,0 +1,297 @@
+package com.company.service;
+
+import com.company.entity.AttachEntity;
+import com.company.storage.AttachStorage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed width renditions of image attaches, rendered in the background with ImageIO.
+ * A rendition is stored next to the original as {storageKey}.w{width}.{jpg|png}, so attaches sharing a blob share them too.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttachDerivativeService {
+
+    private static final String TEMP_FOLDER = ".tmp";
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp", "gif");
+
+    private final AttachStorage attachStorage;
+
+    @Value("${attach.upload.folder}")
+    private String attachFolder;
+
+    @Value("${attach.derivative.enabled:true}")
+    private boolean enabled;
+
+    @Value("${attach.derivative.widths:200,480,960}")
+    private int[] widths;
+
+    @Value("${attach.derivative.threads:2}")
+    private int threads;
+
+    @Value("${attach.derivative.queue:200}")
+    private int queueSize;
+
+    // width * height above which no rendition is made, decoding would need width * height * 4 bytes
+    @Value("${attach.derivative.max-pixels:50000000}")
+    private long maxPixels;
+
+    private ThreadPoolExecutor executor;
+
+
+    @PostConstruct
+    public void init() {
+        Arrays.sort(widths);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "attach-derivative-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    public boolean isImage(String extension) {
+        return extension != null && IMAGE_EXTENSIONS.contains(extension.toLowerCase());
+    }
+
+    /**
+     * Queues rendering of the renditions; when the queue is full the attach is simply served in full size.
+     */
+    public void schedule(AttachEntity entity, String storageKey) {
+        if (!enabled || !isImage(entity.getExtension())) {
+            return;
+        }
+        try {
+            executor.execute(() -> render(storageKey, entity.getExtension()));
+        } catch (RejectedExecutionException e) {
+            log.warn("Derivative queue full {}", entity.getId());
+        }
+    }
+
+    /**
+     * Smallest configured width not narrower than the requested one, 0 when the original should be used.
+     */
+    public int getRenditionWidth(Integer width) {
+        if (!enabled || width == null || width <= 0) {
+            return 0;
+        }
+        for (int candidate : widths) {
+            if (candidate >= width) {
+                return candidate;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * As {@link #getRenditionWidth(Integer)}, but 0 as well when the source is known to be no wider than the
+     * rendition: none is ever rendered for it, the original is the final answer.
+     *
+     * @param sourceWidth width of the original, null when not known
+     */
+    public int getRenditionWidth(Integer width, Integer sourceWidth) {
+        int renditionWidth = getRenditionWidth(width);
+        return sourceWidth != null && renditionWidth >= sourceWidth ? 0 : renditionWidth;
+    }
+
+    /**
+     * Width of the rendition that can be served for the request, 0 when it is not rendered (yet) or never
+     * will be. A source no wider than the rendition needs no lookup in the storage.
+     */
+    public int findRendition(String storageKey, String extension, Integer width, Integer sourceWidth) {
+        int renditionWidth = getRenditionWidth(width, sourceWidth);
+        if (renditionWidth == 0 || !isImage(extension)) {
+            return 0;
+        }
+        try {
+            return attachStorage.exists(getKey(storageKey, extension, renditionWidth)) ? renditionWidth : 0;
+        } catch (IOException e) {
+            log.warn("Cannot check derivative {}", storageKey);
+            return 0;
+        }
+    }
+
+    /**
+     * Width and height from the image header, null when the file is not an image ImageIO can read.
+     */
+    public int[] readSize(Path path, String extension) {
+        if (!isImage(extension)) {
+            return null;
+        }
+        try (ImageInputStream imageIn = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = imageIn == null ? null : ImageIO.getImageReaders(imageIn);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageIn, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot read image size {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public String getKey(String storageKey, String extension, int width) {
+        return storageKey + ".w" + width + "." + getFormat(extension);
+    }
+
+    public String getFormat(String extension) {
+        String lower = extension.toLowerCase();
+        return lower.equals("jpg") || lower.equals("jpeg") ? "jpg" : "png";
+    }
+
+    public List<String> getKeys(String storageKey, String extension) {
+        List<String> keyList = new ArrayList<>();
+        if (isImage(extension)) {
+            for (int width : widths) {
+                keyList.add(getKey(storageKey, extension, width));
+            }
+        }
+        return keyList;
+    }
+
+    public void delete(String storageKey, String extension) {
+        for (String key : getKeys(storageKey, extension)) {
+            try {
+                attachStorage.delete(key);
+            } catch (IOException e) {
+                log.warn("Cannot delete derivative {}", key);
+            }
+        }
+    }
+
+    private void render(String storageKey, String extension) {
+        int sourceWidth;
+        int sourceHeight;
+        BufferedImage source;
+        try (InputStream in = attachStorage.get(storageKey).getInputStream();
+             ImageInputStream imageIn = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = imageIn == null ? null : ImageIO.getImageReaders(imageIn);
+            if (readers == null || !readers.hasNext()) {
+                log.warn("Not an image {}", storageKey);
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageIn, true, true);
+                // the header gives the size, nothing is decoded before it is checked
+                sourceWidth = reader.getWidth(0);
+                sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > maxPixels) {
+                    log.warn("Derivative source too large {} {}x{}", storageKey, sourceWidth, sourceHeight);
+                    return;
+                }
+                int targetWidth = getLargestWidth(sourceWidth);
+                if (targetWidth == 0) {
+                    return;
+                }
+                // decodes every n-th pixel, at least as wide as the largest rendition
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, sourceWidth / targetWidth);
+                param.setSourceSubsampling(step, step, 0, 0);
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot read derivative source {} {}", storageKey, e.getMessage());
+            return;
+        }
+
+        try {
+            String format = getFormat(extension);
+
+            for (int width : widths) {
+                if (width >= sourceWidth) {
+                    break;
+                }
+                String key = getKey(storageKey, extension, width);
+                if (attachStorage.exists(key)) {
+                    continue;
+                }
+                int height = Math.max(1, (int) Math.round((double) sourceHeight * width / sourceWidth));
+                BufferedImage scaled = scale(source, width, height, format.equals("jpg"));
+
+                Path tempFolder = Paths.get(attachFolder, TEMP_FOLDER);
+                Files.createDirectories(tempFolder);
+                Path temp = Files.createTempFile(tempFolder, "derivative-", ".part");
+                try {
+                    ImageIO.write(scaled, format, temp.toFile());
+                    attachStorage.put(key, temp);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot render derivative {} {}", storageKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Widest configured rendition narrower than the source, 0 when the source is small enough already.
+     */
+    private int getLargestWidth(int sourceWidth) {
+        int largest = 0;
+        for (int width : widths) {
+            if (width < sourceWidth) {
+                largest = width;
+            }
+        }
+        return largest;
+    }
+
+    private BufferedImage scale(BufferedImage source, int width, int height, boolean opaque) {
+        BufferedImage target = new BufferedImage(width, height,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+}
@@ -0,0 +1,140 @@
+package com.company.service;
+
+import com.company.entity.AttachEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Read-through cache of attach rows, bounded by entry count (approximate LRU) and TTL.
+ * Rows change only when an attach is deleted or moved, both evict it here. A load that raced with an eviction
+ * is not stored, see {@link #getVersion()}.
+ * <p>
+ * Reads only touch a ConcurrentHashMap and stamp the entry with its access time. Writes take the lock; a put
+ * over max-entries drops the expired entries and the least recently read tenth in one pass.
+ */
+@Service
+public class AttachMetaCacheService {
+
+    @Value("${attach.meta-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${attach.meta-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${attach.meta-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private final Map<UUID, Entry> entryMap = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile long version;
+
+
+    public AttachEntity get(UUID id) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = entryMap.get(id);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.expiresAt > 0) {
+            entryMap.remove(id, entry);
+            return null;
+        }
+        entry.accessedAt = now;
+        return entry.entity;
+    }
+
+    /**
+     * Taken before loading rows from the database and passed to {@link #put}.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void put(AttachEntity entity, long loadVersion) {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (loadVersion != version) {
+                return;
+            }
+            long now = System.nanoTime();
+            entryMap.put(entity.getId(), new Entry(entity, now, now + TimeUnit.SECONDS.toNanos(ttlSeconds)));
+            if (entryMap.size() > maxEntries) {
+                shrink(now);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void evict(UUID id) {
+        lock.lock();
+        try {
+            version++;
+            entryMap.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            version++;
+            entryMap.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops expired entries, then the least recently read ones until a tenth of max-entries is free.
+     */
+    private void shrink(long now) {
+        entryMap.values().removeIf(entry -> now - entry.expiresAt > 0);
+        int excess = entryMap.size() - maxEntries + Math.max(1, maxEntries / 10);
+        if (excess <= 0) {
+            return;
+        }
+        // stamps are copied first, readers keep changing them; compared by difference, nanoTime may wrap
+        List<long[]> stampList = new ArrayList<>();
+        List<Map.Entry<UUID, Entry>> entryList = new ArrayList<>(entryMap.entrySet());
+        for (int i = 0; i < entryList.size(); i++) {
+            stampList.add(new long[]{entryList.get(i).getValue().accessedAt - now, i});
+        }
+        stampList.sort(Comparator.comparingLong(stamp -> stamp[0]));
+        for (int i = 0; i < excess && i < stampList.size(); i++) {
+            Map.Entry<UUID, Entry> victim = entryList.get((int) stampList.get(i)[1]);
+            entryMap.remove(victim.getKey(), victim.getValue());
+        }
+    }
+
+    private static class Entry {
+
+        private final AttachEntity entity;
+        private final long expiresAt;
+        // written by readers without the lock, an approximate order is enough for eviction
+        private volatile long accessedAt;
+
+        Entry(AttachEntity entity, long accessedAt, long expiresAt) {
+            this.entity = entity;
+            this.accessedAt = accessedAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.company.service;
+
+import com.company.entity.AttachBlobEntity;
+import com.company.entity.AttachEntity;
+import com.company.repository.AttachBlobRepository;
+import com.company.repository.AttachRepository;
+import com.company.storage.AttachStorage;
+import com.company.util.StorageKeyUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Online move of attach files from the {year}/{month}/{day} layout to the sharded ab/cd layout.
+ * Every file is copied first, then the rows are pointed at the new key and only then the old file is deleted,
+ * so each attach stays readable under one of the two keys the whole time. Runs in small paced batches.
+ * <p>
+ * Rows are walked by id with a cursor kept between runs, so a row that keeps failing (missing file,
+ * permissions) is only tried again on the next pass over the table and never stalls the ones after it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttachMigrationService {
+
+    private static final String MIN_BLOB_ID = "";
+    // lowest value in the uuid order of Postgres
+    private static final UUID MIN_ATTACH_ID = new UUID(0, 0);
+
+    private final AttachRepository attachRepository;
+    private final AttachBlobRepository attachBlobRepository;
+    private final AttachStorage attachStorage;
+    private final AttachService attachService;
+    private final AttachCacheService attachCacheService;
+    private final AttachDerivativeService attachDerivativeService;
+    private final AttachMetaCacheService attachMetaCacheService;
+
+    @Value("${attach.migration.enabled:false}")
+    private boolean enabled;
+
+    @Value("${attach.migration.batch-size:100}")
+    private int batchSize;
+
+    @Value("${attach.migration.files-per-second:20}")
+    private int filesPerSecond;
+
+    private String lastBlobId = MIN_BLOB_ID;
+    private UUID lastAttachId = MIN_ATTACH_ID;
+
+
+    @Scheduled(initialDelayString = "${attach.migration.delay-ms:30000}", fixedDelayString = "${attach.migration.delay-ms:30000}")
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+        long pause = filesPerSecond > 0 ? 1000L / filesPerSecond : 0;
+        int moved = 0;
+
+        List<AttachBlobEntity> blobList = attachBlobRepository.findAllUnsharded(lastBlobId, batchSize);
+        // a short page ends the pass, the next run starts over and retries the rows that failed
+        lastBlobId = blobList.size() < batchSize ? MIN_BLOB_ID : blobList.get(blobList.size() - 1).getId();
+        for (AttachBlobEntity blob : blobList) {
+            try {
+                migrateBlob(blob);
+                moved++;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Cannot migrate blob {} {}", blob.getStorageKey(), e.getMessage());
+            }
+            if (!pause(pause)) {
+                return;
+            }
+        }
+
+        List<AttachEntity> entityList = attachRepository.findAllByStorageKeyIsNullAndVisibleAndIdGreaterThan(true,
+                lastAttachId, PageRequest.of(0, batchSize, Sort.by(Sort.Direction.ASC, "id")));
+        lastAttachId = entityList.size() < batchSize ? MIN_ATTACH_ID : entityList.get(entityList.size() - 1).getId();
+        for (AttachEntity entity : entityList) {
+            try {
+                migrateLegacy(entity);
+                moved++;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Cannot migrate attach {} {}", entity.getId(), e.getMessage());
+            }
+            if (!pause(pause)) {
+                return;
+            }
+        }
+
+        if (moved > 0) {
+            log.info("Attach files moved to sharded layout {}", moved);
+        }
+    }
+
+    private void migrateBlob(AttachBlobEntity blob) throws IOException {
+        String oldKey = blob.getStorageKey();
+        String newKey = StorageKeyUtil.toShardedKey(oldKey);
+        String extension = oldKey.substring(oldKey.lastIndexOf('.') + 1);
+
+        copy(oldKey, newKey, extension);
+
+        if (attachBlobRepository.updateStorageKey(blob.getId(), oldKey, newKey) == 0) {
+            // the blob was released meanwhile
+            delete(newKey, extension);
+            return;
+        }
+        attachRepository.updateStorageKey(oldKey, newKey);
+        // the rows sharing the blob are not known by id
+        attachMetaCacheService.clear();
+        delete(oldKey, extension);
+    }
+
+    /**
+     * Attaches from before deduplication: the file keeps its {id}.{extension} name under the sharded prefix.
+     */
+    private void migrateLegacy(AttachEntity entity) throws IOException {
+        String oldKey = attachService.getStorageKey(entity);
+        String newKey = StorageKeyUtil.toShardedKey(oldKey);
+
+        copy(oldKey, newKey, entity.getExtension());
+
+        if (attachRepository.updateStorageKey(newKey, entity.getId()) == 0) {
+            delete(newKey, entity.getExtension());
+            return;
+        }
+        attachMetaCacheService.evict(entity.getId());
+        delete(oldKey, entity.getExtension());
+    }
+
+    private void copy(String oldKey, String newKey, String extension) throws IOException {
+        if (!attachStorage.exists(newKey)) {
+            attachStorage.copy(oldKey, newKey);
+        }
+        for (String key : attachDerivativeService.getKeys(oldKey, extension)) {
+            String renditionKey = StorageKeyUtil.toShardedKey(key);
+            if (attachStorage.exists(key) && !attachStorage.exists(renditionKey)) {
+                attachStorage.copy(key, renditionKey);
+            }
+        }
+    }
+
+    private void delete(String key, String extension) throws IOException {
+        attachCacheService.evict(key);
+        attachDerivativeService.getKeys(key, extension).forEach(attachCacheService::evict);
+        attachDerivativeService.delete(key, extension);
+        attachStorage.delete(key);
+    }
+
+    private boolean pause(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
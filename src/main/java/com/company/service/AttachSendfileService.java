@@ -0,0 +1,91 @@
+package com.company.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Zero copy delivery of local attach files. Only the headers are written by the application; the request
+ * attributes below make Tomcat transfer the file (or one range of it) with FileChannel.transferTo,
+ * i.e. sendfile(2), from the page cache to the socket without passing the bytes through the JVM.
+ * Requests it does not cover (several ranges, invalid ranges, HEAD) return null and are streamed by Spring.
+ */
+@Service
+public class AttachSendfileService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Value("${attach.delivery.sendfile:true}")
+    private boolean enabled;
+
+
+    public boolean isSupported(WebRequest request) {
+        if (!enabled || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT, RequestAttributes.SCOPE_REQUEST))) {
+            return false;
+        }
+        return !(request instanceof ServletWebRequest)
+                || ((ServletWebRequest) request).getHttpMethod() != HttpMethod.HEAD;
+    }
+
+    /**
+     * @return headers only response for the whole file or a single range, null when Spring has to answer
+     */
+    public ResponseEntity<Resource> send(WebRequest request, Path file, long length, HttpHeaders headers) {
+        if (length == 0) {
+            return null;
+        }
+        long start = 0;
+        long end = length - 1;
+        HttpStatus status = HttpStatus.OK;
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // a stale If-Range validator asks for the whole file
+        if (range != null && (ifRange == null || ifRange.equals(headers.getETag()))) {
+            List<HttpRange> rangeList;
+            try {
+                rangeList = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (rangeList.size() != 1) {
+                return null;
+            }
+            HttpRange httpRange = rangeList.get(0);
+            if (httpRange.getRangeStart(length) >= length) {
+                return null;
+            }
+            start = httpRange.getRangeStart(length);
+            end = httpRange.getRangeEnd(length);
+            if (start > end) {
+                return null;
+            }
+            status = HttpStatus.PARTIAL_CONTENT;
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentLength(end - start + 1);
+
+        request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString(), RequestAttributes.SCOPE_REQUEST);
+        request.setAttribute(SENDFILE_START, start, RequestAttributes.SCOPE_REQUEST);
+        // exclusive
+        request.setAttribute(SENDFILE_END, end + 1, RequestAttributes.SCOPE_REQUEST);
+
+        return ResponseEntity.status(status).headers(headers).build();
+    }
+}
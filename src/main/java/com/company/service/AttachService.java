@@ -1,31 +1,56 @@
 package com.company.service;
 
+import com.company.dto.AttachCacheDTO;
 import com.company.dto.AttachDTO;
+import com.company.dto.UploadAdmissionDTO;
 import com.company.entity.AttachEntity;
 import com.company.exception.AppBadRequestException;
 import com.company.exception.ItemNotFoundException;
 import com.company.repository.AttachRepository;
+import com.company.storage.AttachStorage;
+import com.company.storage.PartialContent;
+import com.company.util.FaststartUtil;
+import com.company.util.MediaProbeUtil;
+import com.company.util.StorageKeyUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.*;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Slf4j
@@ -33,7 +58,21 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class AttachService {
 
+    private static final String TEMP_FOLDER = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String RENDITION_PENDING_CACHE_CONTROL = "public, max-age=60";
+    private static final Set<String> FASTSTART_EXTENSIONS = Set.of("mp4", "m4v", "mov");
+
     private final AttachRepository attachRepository;
+    private final AttachBlobService attachBlobService;
+    private final AttachSignService attachSignService;
+    private final AttachCacheService attachCacheService;
+    private final AttachDerivativeService attachDerivativeService;
+    private final AttachStorage attachStorage;
+    private final AttachSendfileService attachSendfileService;
+    private final UploadAdmissionService uploadAdmissionService;
+    private final AttachMetaCacheService attachMetaCacheService;
 
     @Value("${attach.upload.folder}")
     private String attachFolder;
@@ -41,33 +80,127 @@ public class AttachService {
     @Value("${server.domain.name}")
     private String domainName;
 
+    @Value("${attach.faststart.enabled:false}")
+    private boolean faststartEnabled;
+
+    @Value("${attach.faststart.max-moov-bytes:67108864}")
+    private long faststartMaxMoovBytes;
+
 
     public AttachDTO upload(MultipartFile file) {
-        AttachEntity entity = new AttachEntity();
-        String pathFolder = getDateFolder();
+        String extension = getExtension(file.getOriginalFilename());
+
+        IngestFile ingestFile = null;
+        try (InputStream in = file.getInputStream()) {
+            ingestFile = writeTemp(in);
+
+            AttachEntity entity = commit(ingestFile, file.getOriginalFilename(), extension);
+            return toDTO(entity);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot Upload");
+            throw new AppBadRequestException(e.getMessage());
+        } finally {
+            if (ingestFile != null) {
+                deleteTemp(ingestFile.getPath());
+            }
+        }
+    }
 
-        File folder = new File(attachFolder + "/" + pathFolder);
-        if (!folder.exists()) {
-            folder.mkdirs();
+    /**
+     * Streams the payload into a temp file under attachFolder, computing size and SHA-256 on the fly.
+     * Only a fixed size buffer is ever held in memory.
+     */
+    public IngestFile writeTemp(InputStream in) throws IOException {
+        Path temp = Files.createTempFile(getTempFolder(), "upload-", ".part");
+
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                uploadAdmissionService.throttle(read);
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException e) {
+            deleteTemp(temp);
+            throw e;
         }
+        return new IngestFile(temp, size, Hex.encodeHexString(digest.digest()));
+    }
 
+    /**
+     * Links the temp file to an attach row. Identical content is stored once: if a blob with the same
+     * checksum exists it only gets another reference, otherwise the temp file is handed to the storage,
+     * which never exposes a half written file.
+     */
+    public AttachEntity commit(IngestFile ingestFile, String originalName, String extension) throws IOException {
+        IngestFile faststartFile = faststart(ingestFile, extension);
         try {
-            String extension = getExtension(file.getOriginalFilename());
+            return link(faststartFile != null ? faststartFile : ingestFile, originalName, extension);
+        } finally {
+            if (faststartFile != null) {
+                deleteTemp(faststartFile.getPath());
+            }
+        }
+    }
 
-            byte[] bytes = file.getBytes();
+    private AttachEntity link(IngestFile ingestFile, String originalName, String extension) throws IOException {
+        String pathFolder = getDateFolder();
 
-            entity = saveAttach(entity, pathFolder, extension, file);
+        // header only probe of audio/video containers and images, runs before the temp file is moved away
+        MediaProbeUtil.MediaInfo mediaInfo = MediaProbeUtil.probe(ingestFile.getPath(), extension);
+        int[] imageSize = attachDerivativeService.readSize(ingestFile.getPath(), extension);
 
-            Path url = Paths.get(folder.getAbsolutePath() + "/" + entity.getId() + "." + extension);
+        String storageKey = attachBlobService.acquire(ingestFile, extension);
 
-            Files.write(url, bytes);
+        try {
+            AttachEntity entity = new AttachEntity();
+            entity.setStorageKey(storageKey);
+            if (mediaInfo != null) {
+                entity.setDuration(Math.round(mediaInfo.getDurationMillis() / 1000.0));
+                entity.setWidth(mediaInfo.getWidth());
+                entity.setHeight(mediaInfo.getHeight());
+                entity.setCodec(mediaInfo.getCodec());
+            }
+            if (imageSize != null) {
+                entity.setWidth(imageSize[0]);
+                entity.setHeight(imageSize[1]);
+            }
+            return saveAttach(entity, pathFolder, extension, originalName,
+                    ingestFile.getSize(), ingestFile.getChecksum());
+        } catch (RuntimeException e) {
+            attachBlobService.release(ingestFile.getChecksum(), storageKey);
+            throw e;
+        }
+    }
 
-            return toDTO(entity);
+    /**
+     * Optional ingest stage: rewrites MP4/MOV files whose moov box comes after the media data
+     * into a new temp file with moov in front.
+     *
+     * @return the rewritten file, or null when the upload is kept as it is
+     */
+    private IngestFile faststart(IngestFile ingestFile, String extension) {
+        if (!faststartEnabled || !FASTSTART_EXTENSIONS.contains(extension.toLowerCase())) {
+            return null;
+        }
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(getTempFolder(), "faststart-", ".part");
+            String checksum = FaststartUtil.faststart(ingestFile.getPath(), temp, faststartMaxMoovBytes);
+            if (checksum != null) {
+                return new IngestFile(temp, ingestFile.getSize(), checksum);
+            }
         } catch (IOException | RuntimeException e) {
-            log.warn("Cannot Upload");
-            delete(entity.getId().toString());
-            throw new AppBadRequestException(e.getMessage());
+            log.warn("Cannot faststart {}", e.getMessage());
+        }
+        if (temp != null) {
+            deleteTemp(temp);
         }
+        return null;
     }
 
     public PageImpl<AttachDTO> list(int page, int size) {
@@ -75,7 +208,7 @@ public class AttachService {
 
         List<AttachDTO> dtoList = new ArrayList<>();
 
-        Page<AttachEntity> entityPage = attachRepository.findAll(pageable);
+        Page<AttachEntity> entityPage = attachRepository.findAllByVisible(true, pageable);
         entityPage.forEach(entity -> {
             dtoList.add(toDTO(entity));
         });
@@ -83,66 +216,388 @@ public class AttachService {
         return new PageImpl<>(dtoList, pageable, entityPage.getTotalElements());
     }
 
-    public byte[] open(String id) {
-        byte[] data;
+    /**
+     * Content of an attach id never changes, so conditional requests are answered before the row is loaded
+     * when the id based ETag matches.
+     *
+     * @param width when set, the closest image rendition not narrower than it is served if rendered already
+     */
+    public ResponseEntity<Resource> open(String id, Integer width, WebRequest request) {
+        String eTag = toETag(id, attachDerivativeService.getRenditionWidth(width));
+        if (isETagMatched(request, eTag)) {
+            request.checkNotModified(eTag);
+            return notModified();
+        }
 
         AttachEntity entity = getById(id);
-        String pathFolder = entity.getPath() + "/" + id + "." + entity.getExtension();
+        String storageKey = resolveKey(getStorageKey(entity));
+        int renditionWidth = attachDerivativeService.findRendition(storageKey, entity.getExtension(), width,
+                entity.getWidth());
+
+        eTag = toETag(id, renditionWidth);
+        long lastModified = toEpochMilli(entity.getCreatedDate());
+        if (request.checkNotModified(eTag, lastModified)) {
+            return notModified();
+        }
+        return serveRendition(storageKey, entity.getExtension(), width, entity.getWidth(), renditionWidth, eTag,
+                lastModified, request);
+    }
+
+    /**
+     * Serves the file named by a signed url token, the attach row is not loaded.
+     */
+    public ResponseEntity<Resource> openSigned(String token, Integer width, WebRequest request) {
+        AttachSignService.SignedAttach signed = attachSignService.verify(token);
+
+        String eTag = toETag(signed.getStorageKey(), attachDerivativeService.getRenditionWidth(width));
+        if (isETagMatched(request, eTag)) {
+            request.checkNotModified(eTag);
+            return notModified();
+        }
+
+        String storageKey = resolveKey(signed.getStorageKey());
+        int renditionWidth = attachDerivativeService.findRendition(storageKey, signed.getExtension(), width,
+                signed.getWidth());
+
+        eTag = toETag(signed.getStorageKey(), renditionWidth);
+        if (request.checkNotModified(eTag)) {
+            return notModified();
+        }
+        ResponseEntity<Resource> response = serveRendition(storageKey, signed.getExtension(), width,
+                signed.getWidth(), renditionWidth, eTag, -1, request);
+        return limitMaxAge(response, signed);
+    }
+
+    /**
+     * Queues the image renditions of an attach, called when an image is linked as photo, banner or preview.
+     */
+    public void createDerivatives(AttachEntity entity) {
+        attachDerivativeService.schedule(entity, getStorageKey(entity));
+    }
+
+    public ResponseEntity<Resource> download(String id, WebRequest request) {
+        String eTag = toETag(id);
+        if (isETagMatched(request, eTag)) {
+            request.checkNotModified(eTag);
+            return notModified();
+        }
+
+        AttachEntity entity = getById(id);
+        long lastModified = toEpochMilli(entity.getCreatedDate());
+        if (request.checkNotModified(eTag, lastModified)) {
+            return notModified();
+        }
+        return serve(resolveKey(getStorageKey(entity)), entity.getExtension(), entity.getOriginalName(),
+                eTag, lastModified, IMMUTABLE_CACHE_CONTROL, request);
+    }
+
+    public ResponseEntity<Resource> downloadSigned(String token, WebRequest request) {
+        AttachSignService.SignedAttach signed = attachSignService.verify(token);
+
+        String eTag = toETag(signed.getStorageKey());
+        if (request.checkNotModified(eTag)) {
+            return notModified();
+        }
+        return limitMaxAge(serve(resolveKey(signed.getStorageKey()), signed.getExtension(), signed.getName(), eTag,
+                -1, IMMUTABLE_CACHE_CONTROL, request), signed);
+    }
+
+    /**
+     * Caches must not keep serving a signed url longer than the url itself is valid.
+     */
+    private ResponseEntity<Resource> limitMaxAge(ResponseEntity<Resource> response,
+                                                 AttachSignService.SignedAttach signed) {
+        long maxAge = signed.getMaxAge();
+        String cacheControl = response.getHeaders().getCacheControl();
+        if (maxAge < 0 || !IMMUTABLE_CACHE_CONTROL.equals(cacheControl)) {
+            return response;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.setCacheControl("public, max-age=" + maxAge + ", immutable");
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    private ResponseEntity<Resource> serveRendition(String storageKey, String extension, Integer width,
+                                                    Integer sourceWidth, int renditionWidth, String eTag,
+                                                    long lastModified, WebRequest request) {
+        if (renditionWidth > 0) {
+            return serve(attachDerivativeService.getKey(storageKey, extension, renditionWidth),
+                    attachDerivativeService.getFormat(extension), null, eTag, lastModified, IMMUTABLE_CACHE_CONTROL,
+                    request);
+        }
+        // a rendition may still be rendering, so the original must not be cached as the resized answer,
+        // unless the source is too small to ever get one
+        String cacheControl = attachDerivativeService.getRenditionWidth(width, sourceWidth) > 0
+                ? RENDITION_PENDING_CACHE_CONTROL : IMMUTABLE_CACHE_CONTROL;
+        return serve(storageKey, extension, null, eTag, lastModified, cacheControl, request);
+    }
+
+    /**
+     * @param originalName when set the file is sent as an attachment with this name
+     */
+    private ResponseEntity<Resource> serve(String storageKey, String extension, String originalName,
+                                           String eTag, long lastModified, String cacheControl,
+                                           WebRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(getMediaType(extension));
+        headers.setETag(eTag);
+        headers.setCacheControl(cacheControl);
+
+        if (lastModified > 0) {
+            headers.setLastModified(lastModified);
+        }
+        if (originalName != null) {
+            headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + originalName + "\"");
+        }
+
+        Resource resource = attachCacheService.get(storageKey);
+
+        if (resource == null) {
+            ResponseEntity<Resource> response = sendfile(storageKey, headers, request);
+            if (response == null) {
+                response = partial(storageKey, headers, request);
+            }
+            if (response != null) {
+                return response;
+            }
+            resource = openFile(storageKey);
+        }
+
+        /*
+         * The body is handed over as a Resource, so Spring MVC answers Range requests itself:
+         * Accept-Ranges, 206 with Content-Range (multipart/byteranges for several ranges)
+         * and 416 for unsatisfiable ranges, copying only the requested regions from the file.
+         */
+        return ResponseEntity.ok().headers(headers).body(resource);
+    }
+
+    /**
+     * Local files too large for the hot cache are sent by the connector with sendfile when it supports it.
+     */
+    private ResponseEntity<Resource> sendfile(String storageKey, HttpHeaders headers, WebRequest request) {
+        Path file = attachStorage.getPath(storageKey);
+        if (file == null || !attachSendfileService.isSupported(request)) {
+            return null;
+        }
+        try {
+            long length = Files.size(file);
+            if (attachCacheService.isCacheable(length)) {
+                return null;
+            }
+            return attachSendfileService.send(request, file, length, headers);
+        } catch (IOException e) {
+            log.warn("Cannot Open {}", storageKey);
+            return null;
+        }
+    }
+
+    /**
+     * A single range is opened by the storage itself when it can (ranged GET on S3), instead of letting
+     * Spring reach it by reading and dropping every byte of the object before it.
+     */
+    private ResponseEntity<Resource> partial(String storageKey, HttpHeaders headers, WebRequest request) {
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // a stale If-Range validator asks for the whole file
+        if (range == null || (ifRange != null && !ifRange.equals(headers.getETag()))) {
+            return null;
+        }
+        List<HttpRange> rangeList;
+        try {
+            rangeList = HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (rangeList.size() != 1) {
+            return null;
+        }
 
+        PartialContent content;
         try {
-            Path path = Paths.get(attachFolder + "/" + pathFolder);
-            data = Files.readAllBytes(path);
-            return data;
+            content = attachStorage.getRange(storageKey, rangeList.get(0));
         } catch (IOException e) {
-            log.warn("Cannot Open");
-            return new byte[0];
+            log.warn("Cannot Open {}", storageKey);
+            return null;
+        }
+        if (content == null) {
+            return null;
+        }
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.set(HttpHeaders.CONTENT_RANGE,
+                "bytes " + content.getStart() + "-" + content.getEnd() + "/" + content.getTotalLength());
+        headers.setContentLength(content.getEnd() - content.getStart() + 1);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers)
+                .body(new InputStreamResource(content.getBody()));
+    }
+
+    /**
+     * WebRequest.checkNotModified has already written the 304 status and the ETag header.
+     */
+    private ResponseEntity<Resource> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .header(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL)
+                .build();
+    }
+
+    private String toETag(String value) {
+        return "\"" + value + "\"";
+    }
+
+    private String toETag(String value, int renditionWidth) {
+        return renditionWidth > 0 ? toETag(value + "-w" + renditionWidth) : toETag(value);
+    }
+
+    /**
+     * Only an actual ETag match skips the row lookup. "*" matches any existing attach, so it has to find the
+     * row first, unknown and deleted ids still answer 404.
+     */
+    private boolean isETagMatched(WebRequest request, String eTag) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        return ifNoneMatch != null && ifNoneMatch.contains(eTag);
+    }
+
+    private long toEpochMilli(LocalDateTime date) {
+        if (date == null) {
+            return -1;
         }
+        return date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
-    public ResponseEntity<?> download(String id) {
+    /**
+     * Keys of the date layout are found under their sharded key once AttachMigrationService has moved them,
+     * e.g. when they come from a signed url issued before the move.
+     */
+    private String resolveKey(String storageKey) {
+        if (StorageKeyUtil.isSharded(storageKey)) {
+            return storageKey;
+        }
         try {
-            AttachEntity entity = getById(id);
-            String path = entity.getPath() + "/" + id + "." + entity.getExtension();
+            return attachStorage.exists(storageKey) ? storageKey : StorageKeyUtil.toShardedKey(storageKey);
+        } catch (IOException e) {
+            log.warn("Cannot check {}", storageKey);
+            return storageKey;
+        }
+    }
 
-            Path file = Paths.get(attachFolder + "/" + path);
-            Resource resource = new UrlResource(file.toUri());
+    /**
+     * Small files go through the hot attach cache, everything else is streamed from the storage.
+     */
+    private Resource openFile(String storageKey) {
+        Resource resource = attachStorage.get(storageKey);
 
-            if (resource.exists() || resource.isReadable()) {
-                return ResponseEntity.ok().header(HttpHeaders.CONTENT_DISPOSITION,
-                                "attachment; filename=\"" + entity.getOriginalName() + "\"")
-                        .body(resource);
-            } else {
-                log.warn("Cannot Read");
-                throw new AppBadRequestException("Could not read the file!");
-            }
+        if (!resource.isReadable()) {
+            log.warn("Cannot Open {}", storageKey);
+            throw new AppBadRequestException("Could not read the file!");
+        }
 
-        } catch (MalformedURLException e) {
-            log.warn("Cannot Download");
-            throw new AppBadRequestException("Error" + e.getMessage());
+        try {
+            Resource cached = attachCacheService.load(storageKey, resource, resource.contentLength());
+            return cached != null ? cached : resource;
+        } catch (IOException e) {
+            log.warn("Cannot Cache {}", storageKey);
+            return resource;
         }
     }
 
+    /**
+     * Hides the attach and evicts it from the cache. Files are removed later by AttachCollectorService,
+     * so callers never wait on disk I/O.
+     */
     public Boolean delete(String id) {
         AttachEntity entity = getById(id);
 
-        File file = new File(attachFolder + "/" + entity.getPath() +
-                "/" + entity.getId() + "." + entity.getExtension());
+        attachRepository.updateVisible(LocalDateTime.now(), entity.getId());
+        attachMetaCacheService.evict(entity.getId());
+        evict(entity);
+        return true;
+    }
 
-        if (file.delete()) {
-            attachRepository.deleteById(entity.getId());
-            return true;
-        } else {
-            log.warn("Cannot Read");
+    /**
+     * Removes the files and the row of a hidden attach. A row still referenced (e.g. by a hidden video)
+     * stays behind without files and is not picked up again.
+     */
+    public void purge(AttachEntity entity) {
+        evict(entity);
+
+        try {
+            if (entity.getChecksum() != null && entity.getStorageKey() != null) {
+                attachBlobService.release(entity.getChecksum(), entity.getStorageKey());
+                if (!attachStorage.exists(entity.getStorageKey())) {
+                    attachDerivativeService.delete(entity.getStorageKey(), entity.getExtension());
+                }
+            } else {
+                attachDerivativeService.delete(getStorageKey(entity), entity.getExtension());
+                attachStorage.delete(getStorageKey(entity));
+            }
+        } catch (IOException e) {
+            log.warn("Cannot delete {}", getStorageKey(entity));
+        }
+
+        try {
             attachRepository.deleteById(entity.getId());
-            throw new AppBadRequestException("Could not read the file!");
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Attach still referenced {}", entity.getId());
+            attachRepository.clearDeletedDate(entity.getId());
         }
     }
 
+    private void evict(AttachEntity entity) {
+        String storageKey = getStorageKey(entity);
+        attachCacheService.evict(storageKey);
+        attachDerivativeService.getKeys(storageKey, entity.getExtension()).forEach(attachCacheService::evict);
+    }
+
+    public AttachCacheDTO getCacheStats() {
+        return attachCacheService.getStats();
+    }
+
+    public UploadAdmissionDTO getUploadStats() {
+        return uploadAdmissionService.getStats();
+    }
+
+    /**
+     * Served from the attach row cache when possible.
+     */
     public AttachEntity getById(String id) {
-        return attachRepository.findById(UUID.fromString(id)).orElseThrow(() -> {
+        UUID uuid = UUID.fromString(id);
+        AttachEntity cached = attachMetaCacheService.get(uuid);
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = attachMetaCacheService.getVersion();
+        AttachEntity entity = attachRepository.findByIdAndVisible(uuid, true).orElseThrow(() -> {
             log.warn("Not found {}", id);
             return new ItemNotFoundException("Not found!");
         });
+        attachMetaCacheService.put(entity, version);
+        return entity;
+    }
+
+    /**
+     * Multi-get: cached rows plus one query for the rest. Unknown or deleted ids are left out.
+     */
+    public Map<UUID, AttachEntity> getByIds(Collection<String> idList) {
+        Map<UUID, AttachEntity> entityMap = new HashMap<>();
+        Set<UUID> missSet = new HashSet<>();
+        for (String id : idList) {
+            UUID uuid = UUID.fromString(id);
+            AttachEntity cached = attachMetaCacheService.get(uuid);
+            if (cached != null) {
+                entityMap.put(uuid, cached);
+            } else {
+                missSet.add(uuid);
+            }
+        }
+        if (!missSet.isEmpty()) {
+            long version = attachMetaCacheService.getVersion();
+            for (AttachEntity entity : attachRepository.findAllByIdInAndVisible(missSet, true)) {
+                attachMetaCacheService.put(entity, version);
+                entityMap.put(entity.getId(), entity);
+            }
+        }
+        return entityMap;
     }
 
     public AttachDTO toDTO(AttachEntity entity) {
@@ -150,34 +605,116 @@ public class AttachService {
         dto.setId(entity.getId().toString());
         dto.setPath(entity.getPath());
         dto.setOriginalName(entity.getOriginalName());
-        dto.setUrl(domainName + "attach/download/" + entity.getId());
+        dto.setUrl(toDownloadUrl(entity));
         dto.setCreatedDate(entity.getCreatedDate());
         return dto;
     }
 
-    public AttachEntity saveAttach(AttachEntity entity, String pathFolder, String extension, MultipartFile file) {
+    public AttachEntity saveAttach(AttachEntity entity, String pathFolder, String extension,
+                                   String originalName, long fileSize, String checksum) {
         entity.setPath(pathFolder);
-        entity.setOriginalName(file.getOriginalFilename());
+        entity.setOriginalName(originalName);
         entity.setExtension(extension);
-        entity.setFileSize(file.getSize());
+        entity.setFileSize(fileSize);
+        entity.setChecksum(checksum);
         attachRepository.save(entity);
         return entity;
     }
 
+    /**
+     * Key of the file in the attach storage. Attaches uploaded before deduplication have no blob and
+     * keep the old {path}/{id}.{extension} name until the layout migration gives them a sharded key.
+     */
+    public String getStorageKey(AttachEntity entity) {
+        if (entity.getStorageKey() != null) {
+            return entity.getStorageKey();
+        }
+        return entity.getPath() + "/" + entity.getId() + "." + entity.getExtension();
+    }
+
+    public MediaType getMediaType(String extension) {
+        return MediaTypeFactory.getMediaType("file." + extension).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    /**
+     * Always signed when signing is on, so an attach keeps one url whether its row is cached or not.
+     * Listings call {@link #preload} first, then this costs no query. Unknown and deleted ids keep the plain url.
+     */
     public String toOpenUrl(String id) {
+        if (attachSignService.isEnabled()) {
+            AttachEntity entity = getByIds(List.of(id)).get(UUID.fromString(id));
+            if (entity != null) {
+                return toOpenUrl(entity);
+            }
+        }
         return domainName + "attach/open/" + id;
     }
 
+    /**
+     * Loads the attach rows of a listing into the row cache with one query, so signing their urls
+     * needs no query per item. Nothing to load when urls are not signed.
+     */
+    public void preload(Collection<String> idList) {
+        if (attachSignService.isEnabled() && !idList.isEmpty()) {
+            getByIds(idList);
+        }
+    }
+
+    /**
+     * Signed url carrying storage key and extension when attach.url.secret is set,
+     * so opening it needs no database lookup.
+     */
+    public String toOpenUrl(AttachEntity entity) {
+        if (!attachSignService.isEnabled()) {
+            return domainName + "attach/open/" + entity.getId();
+        }
+        return domainName + "attach/open/s/" + attachSignService.sign(getStorageKey(entity), entity.getExtension(),
+                null, entity.getWidth());
+    }
+
+    public String toDownloadUrl(AttachEntity entity) {
+        if (!attachSignService.isEnabled()) {
+            return domainName + "attach/download/" + entity.getId();
+        }
+        return domainName + "attach/download/s/" + attachSignService.sign(getStorageKey(entity),
+                entity.getExtension(), entity.getOriginalName());
+    }
+
     public String getExtension(String fileName) {
         int lastIndex = fileName.lastIndexOf(".");
         return fileName.substring(lastIndex + 1);
     }
 
     public String getDateFolder() {
-        int year = Calendar.getInstance().get(Calendar.YEAR);
-        int month = Calendar.getInstance().get(Calendar.MONTH) + 1;
-        int day = Calendar.getInstance().get(Calendar.DATE);
+        LocalDate date = LocalDate.now();
+        return date.getYear() + "/" + date.getMonthValue() + "/" + date.getDayOfMonth();
+    }
+
+    public Path getTempFolder() throws IOException {
+        Path tempFolder = Paths.get(attachFolder, TEMP_FOLDER);
+        Files.createDirectories(tempFolder);
+        return tempFolder;
+    }
+
+    public String checksum(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return DigestUtils.sha256Hex(in);
+        }
+    }
+
+    public void deleteTemp(Path temp) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            log.warn("Cannot delete temp {}", temp);
+        }
+    }
 
-        return year + "/" + month + "/" + day;
+    @Getter
+    @AllArgsConstructor
+    public static class IngestFile {
+        private final Path path;
+        private final long size;
+        private final String checksum;
     }
 }
@@ -0,0 +1,112 @@
+package com.company.service;
+
+import com.company.exception.AppForbiddenException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.apache.commons.codec.digest.HmacUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Signs attach locations into url tokens, so files can be served without loading the attach row.
+ * Token: base64url(storageKey \n extension \n expires \n name \n width) . base64url(HMAC-SHA256), the width of
+ * an image lets the server answer resized requests for small images without a storage lookup.
+ * <p>
+ * A token is not tied to the attach row, so it cannot be revoked: after an attach is deleted its signed
+ * urls keep working until they expire, and as long as another attach shares the blob they still serve
+ * its bytes. The ttl bounds that window. Expiry is rounded up to attach.url.ttl-step-seconds, so an attach
+ * gets the same url for a whole step and browser and CDN caches are not split by every new signature.
+ */
+@Slf4j
+@Service
+public class AttachSignService {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${attach.url.secret:}")
+    private String secret;
+
+    /**
+     * 0 means signed urls never expire, deleted attaches then stay reachable through urls handed out before
+     */
+    @Value("${attach.url.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${attach.url.ttl-step-seconds:3600}")
+    private long ttlStepSeconds;
+
+
+    public boolean isEnabled() {
+        return !secret.isBlank();
+    }
+
+    public String sign(String storageKey, String extension, String name) {
+        return sign(storageKey, extension, name, null);
+    }
+
+    public String sign(String storageKey, String extension, String name, Integer width) {
+        long expires = 0;
+        if (ttlSeconds > 0) {
+            long step = Math.max(ttlStepSeconds, 1);
+            expires = ((System.currentTimeMillis() / 1000 + ttlSeconds) / step + 1) * step;
+        }
+
+        String payload = String.join("\n", storageKey, extension, String.valueOf(expires),
+                name == null ? "" : name.replace("\n", " "), width == null ? "" : width.toString());
+
+        return ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "." + ENCODER.encodeToString(hmac(payload));
+    }
+
+    public SignedAttach verify(String token) {
+        try {
+            int dot = token.indexOf('.');
+            String payload = new String(DECODER.decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+
+            if (!isEnabled() || !MessageDigest.isEqual(hmac(payload), DECODER.decode(token.substring(dot + 1)))) {
+                log.warn("Invalid signature {}", token);
+                throw new AppForbiddenException("Invalid signature!");
+            }
+
+            String[] fields = payload.split("\n", -1);
+            long expires = Long.parseLong(fields[2]);
+            if (expires > 0 && expires < System.currentTimeMillis() / 1000) {
+                log.warn("Expired url {}", token);
+                throw new AppForbiddenException("Url expired!");
+            }
+            // tokens signed before the width was added have four fields
+            Integer width = fields.length > 4 && !fields[4].isEmpty() ? Integer.valueOf(fields[4]) : null;
+            return new SignedAttach(fields[0], fields[1], fields[3].isEmpty() ? null : fields[3], expires, width);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            log.warn("Invalid token {}", token);
+            throw new AppForbiddenException("Invalid signature!");
+        }
+    }
+
+    private byte[] hmac(String payload) {
+        return new HmacUtils(HmacAlgorithms.HMAC_SHA_256, secret).hmac(payload);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class SignedAttach {
+        private final String storageKey;
+        private final String extension;
+        private final String name;
+        private final long expires;
+        private final Integer width;
+
+        /**
+         * Seconds the url stays valid, -1 when it never expires.
+         */
+        public long getMaxAge() {
+            return expires > 0 ? Math.max(expires - System.currentTimeMillis() / 1000, 0) : -1;
+        }
+    }
+}
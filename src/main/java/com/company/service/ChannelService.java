@@ -9,6 +9,7 @@ import com.company.entity.ChannelEntity;
 import com.company.entity.ProfileEntity;
 import com.company.enums.ChannelStatus;
 import com.company.enums.ProfileRole;
+import com.company.enums.SuggestType;
 import com.company.exception.AppBadRequestException;
 import com.company.exception.AppForbiddenException;
 import com.company.exception.ItemNotFoundException;
@@ -32,6 +33,7 @@ public class ChannelService {
     private final ChannelRepository channelRepository;
     private final AttachService attachService;
     private final ProfileService profileService;
+    private final VideoSuggestService videoSuggestService;
 
     @Value("${server.domain.name}")
     private String domainName;
@@ -50,6 +52,7 @@ public class ChannelService {
             log.warn("Unique {}", dto);
             throw new AppBadRequestException("Unique!");
         }
+        videoSuggestService.index(entity);
         return toDTO(entity);
     }
 
@@ -69,6 +72,7 @@ public class ChannelService {
             log.warn("Unique {}", dto);
             throw new AppBadRequestException("Unique!");
         }
+        videoSuggestService.index(entity);
         return toDTO(entity);
     }
 
@@ -88,10 +92,12 @@ public class ChannelService {
             }
             String oldAttach = entity.getPhotoId().toString();
             channelRepository.updatePhoto(UUID.fromString(attachId), UUID.fromString(channelId));
+            attachService.createDerivatives(attachEntity);
             attachService.delete(oldAttach);
             return true;
         }
         channelRepository.updatePhoto(UUID.fromString(attachId), UUID.fromString(channelId));
+        attachService.createDerivatives(attachEntity);
         return true;
     }
 
@@ -112,10 +118,12 @@ public class ChannelService {
             }
             String oldAttach = entity.getBannerId().toString();
             channelRepository.updateBanner(UUID.fromString(attachId), UUID.fromString(channelId));
+            attachService.createDerivatives(attachEntity);
             attachService.delete(oldAttach);
             return true;
         }
         channelRepository.updateBanner(UUID.fromString(attachId), UUID.fromString(channelId));
+        attachService.createDerivatives(attachEntity);
         return true;
     }
 
@@ -125,6 +133,7 @@ public class ChannelService {
         List<ChannelDTO> dtoList = new ArrayList<>();
 
         Page<ChannelEntity> entityPage = channelRepository.findAll(pageable);
+        preloadAttaches(entityPage.getContent());
 
         entityPage.forEach(entity -> {
             dtoList.add(toDTO(entity));
@@ -141,11 +150,14 @@ public class ChannelService {
             switch (entity.getStatus()) {
                 case ACTIVE -> {
                     channelRepository.updateStatus(ChannelStatus.BLOCK, entity.getId());
+                    entity.setStatus(ChannelStatus.BLOCK);
                 }
                 case BLOCK -> {
                     channelRepository.updateStatus(ChannelStatus.ACTIVE, entity.getId());
+                    entity.setStatus(ChannelStatus.ACTIVE);
                 }
             }
+            videoSuggestService.index(entity);
 
             return true;
         }
@@ -160,6 +172,7 @@ public class ChannelService {
 
         List<ChannelEntity> entityList = channelRepository.findAllByProfileId(profileEntity.getId(),
                 Sort.by(Sort.Direction.ASC, "name"));
+        preloadAttaches(entityList);
 
         entityList.forEach(entity -> {
             dtoList.add(toDTO(entity));
@@ -176,6 +189,7 @@ public class ChannelService {
         }
 
         channelRepository.delete(entity);
+        videoSuggestService.remove(SuggestType.CHANNEL, entity.getId());
 
         attachService.delete(entity.getBannerId().toString());
         attachService.delete(entity.getPhotoId().toString());
@@ -196,6 +210,22 @@ public class ChannelService {
                 });
     }
 
+    /**
+     * Photo and banner rows of a listing in one query, see {@link AttachService#preload}.
+     */
+    private void preloadAttaches(List<ChannelEntity> entityList) {
+        List<String> attachIdList = new ArrayList<>();
+        entityList.forEach(entity -> {
+            if (entity.getPhotoId() != null) {
+                attachIdList.add(entity.getPhotoId().toString());
+            }
+            if (entity.getBannerId() != null) {
+                attachIdList.add(entity.getBannerId().toString());
+            }
+        });
+        attachService.preload(attachIdList);
+    }
+
     public ChannelDTO toDTO(ChannelEntity entity) {
         ChannelDTO dto = new ChannelDTO();
         dto.setId(entity.getId().toString());
@@ -12,7 +12,6 @@ import com.company.exception.ItemNotFoundException;
 import com.company.mapper.PlayListInfoAdminMapper;
 import com.company.mapper.PlayListInfoJpqlAdminMapper;
 import com.company.repository.PlaylistRepository;
-import com.company.repository.PlaylistVideoRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
@@ -31,7 +30,6 @@ public class PlaylistService {
     private final PlaylistRepository playlistRepository;
     private final ChannelService channelService;
     private final ProfileService profileService;
-    private final PlaylistVideoRepository playlistVideoRepository;
     private final AttachService attachService;
     private final VideoService videoService;
 
@@ -169,8 +167,10 @@ public class PlaylistService {
                 PlaylistStatus.PUBLIC,
                 Sort.by(Sort.Direction.DESC, "orderNum"));
 
+        // counts and first videos of all playlists in two queries
+        Map<UUID, PlaylistDTO> dtoMap = videoService.toShortPlaylistDTOMap(entityList);
         entityList.forEach(entity -> {
-            dtoList.add(toShortDTO(entity));
+            dtoList.add(dtoMap.get(entity.getId()));
         });
         return dtoList;
     }
@@ -183,8 +183,10 @@ public class PlaylistService {
         List<PlaylistEntity> entityList = playlistRepository.findAllByProfileId(profileEntity.getId(),
                 Sort.by(Sort.Direction.DESC, "orderNum"));
 
+        // counts and first videos of all playlists in two queries
+        Map<UUID, PlaylistDTO> dtoMap = videoService.toShortPlaylistDTOMap(entityList);
         entityList.forEach(entity -> {
-            dtoList.add(toShortDTO(entity));
+            dtoList.add(dtoMap.get(entity.getId()));
         });
         return dtoList;
     }
@@ -216,30 +218,7 @@ public class PlaylistService {
     }
 
     public PlaylistDTO toShortDTO(PlaylistEntity entity) {
-        PlaylistDTO dto = new PlaylistDTO();
-        dto.setId(entity.getId().toString());
-        dto.setName(entity.getName());
-
-        ChannelDTO ChannelDTO = new ChannelDTO(channelService.toOpenUrl(entity.getChannelId().toString()));
-        dto.setChannel(ChannelDTO);
-
-        dto.setVideoCount(playlistVideoRepository.getVideoCountByPlaylistId(entity.getId()));
-
-
-        List<VideoDTO> videoList = playlistVideoRepository.getTop2VideoByPlaylistId(entity.getId())
-                .stream()
-                .map(playlistVideoEntity -> {
-                    VideoDTO videoDTO = new VideoDTO();
-                    videoDTO.setId(playlistVideoEntity.getVideoId().toString());
-                    videoDTO.setTitle(playlistVideoEntity.getVideo().getTitle());
-                    videoDTO.setUrl(videoService.toOpenUrl(playlistVideoEntity.getVideoId().toString()));
-                    videoDTO.setDuration(playlistVideoEntity.getVideo().getDuration());
-                    return videoDTO;
-                }).toList();
-
-        dto.setVideoList(videoList);
-        dto.setCreatedDate(entity.getCreatedDate());
-        return dto;
+        return videoService.toShortPlaylistDTOMap(List.of(entity)).get(entity.getId());
     }
 
     public PlaylistDTO toFullDTO(PlaylistEntity entity) {
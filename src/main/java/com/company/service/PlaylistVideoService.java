@@ -27,6 +27,7 @@ public class PlaylistVideoService {
     private final PlaylistRepository playlistRepository;
     private final VideoService videoService;
     private final ChannelService channelService;
+    private final VideoRelatedService videoRelatedService;
 
 
     public PlaylistVideoDTO create(PlaylistVideoDTO dto, String profileId) {
@@ -80,6 +81,7 @@ public class PlaylistVideoService {
         PlaylistVideoEntity entity = getByPlaylistIdAndVideoId(dto.getPlaylistId(), dto.getVideoId());
 
         playlistVideoRepository.delete(entity);
+        videoRelatedService.markDirty(videoEntity.getId());
         return true;
     }
 
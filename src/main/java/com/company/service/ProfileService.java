@@ -92,10 +92,12 @@ public class ProfileService {
             }
             String oldAttach = entity.getAttachId().toString();
             profileRepository.updateAttach(UUID.fromString(attachId), UUID.fromString(pId));
+            attachService.createDerivatives(attachEntity);
             attachService.delete(oldAttach);
             return true;
         }
         profileRepository.updateAttach(UUID.fromString(attachId), UUID.fromString(pId));
+        attachService.createDerivatives(attachEntity);
         return true;
     }
 
@@ -170,7 +172,7 @@ public class ProfileService {
         dto.setUpdatedDate(entity.getUpdatedDate());
 
         if (Optional.ofNullable(entity.getAttach()).isPresent()) {
-            AttachDTO attachDTO = new AttachDTO(attachService.toOpenUrl(entity.getAttach().getId().toString()));
+            AttachDTO attachDTO = new AttachDTO(attachService.toOpenUrl(entity.getAttach()));
             dto.setImage(attachDTO);
         }
 
@@ -187,7 +189,7 @@ public class ProfileService {
         dto.setStatus(dto.getStatus());
 
         if (Optional.ofNullable(entity.getAttach()).isPresent()) {
-            AttachDTO attachDTO = new AttachDTO(attachService.toOpenUrl(entity.getAttach().getId().toString()));
+            AttachDTO attachDTO = new AttachDTO(attachService.toOpenUrl(entity.getAttach()));
             dto.setImage(attachDTO);
         }
 
@@ -203,7 +205,7 @@ public class ProfileService {
         dto.setSurname(entity.getSurname());
 
         if (Optional.ofNullable(entity.getAttach()).isPresent()) {
-            AttachDTO attachDTO = new AttachDTO(attachService.toOpenUrl(entity.getAttach().getId().toString()));
+            AttachDTO attachDTO = new AttachDTO(attachService.toOpenUrl(entity.getAttach()));
             dto.setImage(attachDTO);
         }
 
@@ -3,10 +3,12 @@ package com.company.service;
 import com.company.dto.TagDTO;
 import com.company.entity.TagEntity;
 import com.company.enums.ProfileRole;
+import com.company.enums.SuggestType;
 import com.company.exception.AppBadRequestException;
 import com.company.exception.AppForbiddenException;
 import com.company.exception.ItemNotFoundException;
 import com.company.repository.TagRepository;
+import com.company.repository.VideoTagRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +28,9 @@ public class TagService {
 
 
     private final TagRepository tagRepository;
+    private final VideoSuggestService videoSuggestService;
+    private final VideoTagRepository videoTagRepository;
+    private final VideoTagIndexService videoTagIndexService;
 
     
     public TagDTO create(TagDTO dto) {
@@ -38,6 +43,7 @@ public class TagService {
             log.warn("Unique {}", dto);
             throw new AppBadRequestException("Unique Items!");
         }
+        videoSuggestService.index(entity);
         return toDTO(entity);
     }
 
@@ -65,13 +71,17 @@ public class TagService {
             log.warn("Unique {}", dto);
             throw new AppBadRequestException("Unique Items!");
         }
+        videoSuggestService.index(entity);
         return toDTO(entity);
 
     }
 
     public Boolean delete(String id) {
         TagEntity entity = get(id);
+        videoTagRepository.deleteAllByTagId(entity.getId());
+        videoTagIndexService.removeTag(entity.getId());
         tagRepository.delete(entity);
+        videoSuggestService.remove(SuggestType.TAG, entity.getId());
         return true;
     }
 
@@ -0,0 +1,227 @@
+package com.company.service;
+
+import com.company.dto.UploadAdmissionDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Admission control for ingest (uploads and upload session chunks):
+ * a byte token bucket per profile (or client ip), a global limit of concurrent uploads with a bounded wait queue,
+ * and a global bandwidth budget applied inside the copy loops.
+ */
+@Slf4j
+@Service
+public class UploadAdmissionService {
+
+    @Value("${attach.upload.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${attach.upload.max-queue:32}")
+    private int maxQueue;
+
+    @Value("${attach.upload.queue-timeout-ms:10000}")
+    private long queueTimeoutMs;
+
+    @Value("${attach.upload.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    /**
+     * 0 means unlimited
+     */
+    @Value("${attach.upload.bytes-per-second:0}")
+    private long bytesPerSecond;
+
+    /**
+     * 0 means unlimited
+     */
+    @Value("${attach.upload.profile.bytes-per-second:10485760}")
+    private long profileBytesPerSecond;
+
+    @Value("${attach.upload.profile.burst-bytes:1073741824}")
+    private long profileBurstBytes;
+
+    private Semaphore semaphore;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<String, TokenBucket> bucketMap = new ConcurrentHashMap<>();
+    private final ThreadLocal<TokenBucket> currentBucket = new ThreadLocal<>();
+
+    private long nextFreeNanos;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+    private final AtomicLong rejectedProfile = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+
+    @PostConstruct
+    public void init() {
+        semaphore = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Checks the bucket of the profile without taking from it, the bytes are charged as they are read
+     * by {@link #throttle(int)}. A profile is turned away while an earlier upload has left its bucket empty.
+     *
+     * @return 0 when admitted, otherwise the seconds after which the bucket holds tokens again
+     */
+    public long checkProfile(String key) {
+        if (profileBytesPerSecond <= 0) {
+            return 0;
+        }
+        TokenBucket bucket = bucketMap.computeIfAbsent(key, k -> new TokenBucket(profileBurstBytes));
+        long wait = bucket.getWait(profileBytesPerSecond, profileBurstBytes);
+        if (wait > 0) {
+            rejectedProfile.incrementAndGet();
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait) + 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Charges the bytes read by the calling thread to the bucket of the profile, until {@link #release()}.
+     * Called once the upload slot is granted, so a request rejected by the queue costs nothing.
+     */
+    public void bind(String key) {
+        if (profileBytesPerSecond > 0) {
+            currentBucket.set(bucketMap.computeIfAbsent(key, k -> new TokenBucket(profileBurstBytes)));
+        }
+    }
+
+    /**
+     * Waits for an upload slot while the queue has room.
+     *
+     * @return 0 when a slot was taken (release it with {@link #release()}), otherwise the Retry-After seconds
+     */
+    public long acquire() throws InterruptedException {
+        if (semaphore.tryAcquire()) {
+            admitted.incrementAndGet();
+            return 0;
+        }
+        if (queued.incrementAndGet() > maxQueue) {
+            queued.decrementAndGet();
+            rejectedQueueFull.incrementAndGet();
+            return retryAfterSeconds;
+        }
+        try {
+            if (semaphore.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                admitted.incrementAndGet();
+                return 0;
+            }
+        } finally {
+            queued.decrementAndGet();
+        }
+        rejectedTimeout.incrementAndGet();
+        return retryAfterSeconds;
+    }
+
+    public void release() {
+        currentBucket.remove();
+        semaphore.release();
+    }
+
+    /**
+     * Paces the calling copy loop to the global ingest bandwidth, a burst of one second is allowed.
+     * The bytes are also charged to the bound profile, which is paced to its own rate once its burst is spent;
+     * uploads without Content-Length or larger than the burst pay for every byte this way.
+     */
+    public void throttle(int bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        long wait = 0;
+        if (bytesPerSecond > 0) {
+            synchronized (this) {
+                long now = System.nanoTime();
+                long cost = bytes * 1_000_000_000L / bytesPerSecond;
+                nextFreeNanos = Math.max(nextFreeNanos, now - 1_000_000_000L) + cost;
+                wait = nextFreeNanos - now;
+            }
+        }
+        TokenBucket bucket = currentBucket.get();
+        if (bucket != null) {
+            wait = Math.max(wait, bucket.charge(bytes, profileBytesPerSecond, profileBurstBytes));
+        }
+        if (wait > 0) {
+            throttledNanos.addAndGet(wait);
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Buckets that have been full for a while carry no state and are dropped.
+     */
+    @Scheduled(fixedDelayString = "${attach.upload.bucket-cleanup-ms:600000}")
+    public void deleteIdleBuckets() {
+        bucketMap.entrySet().removeIf(entry -> entry.getValue().isIdle(profileBytesPerSecond, profileBurstBytes));
+    }
+
+    public UploadAdmissionDTO getStats() {
+        UploadAdmissionDTO dto = new UploadAdmissionDTO();
+        dto.setMaxConcurrent(maxConcurrent);
+        dto.setActive(maxConcurrent - semaphore.availablePermits());
+        dto.setMaxQueue(maxQueue);
+        dto.setQueued(queued.get());
+        dto.setBytesPerSecond(bytesPerSecond);
+        dto.setProfileBytesPerSecond(profileBytesPerSecond);
+        dto.setProfileBurstBytes(profileBurstBytes);
+        dto.setProfileBuckets(bucketMap.size());
+        dto.setAdmitted(admitted.get());
+        dto.setRejectedQueueFull(rejectedQueueFull.get());
+        dto.setRejectedTimeout(rejectedTimeout.get());
+        dto.setRejectedProfile(rejectedProfile.get());
+        dto.setThrottledMillis(TimeUnit.NANOSECONDS.toMillis(throttledNanos.get()));
+        return dto;
+    }
+
+    private static class TokenBucket {
+
+        private double tokens;
+        private long updatedNanos = System.nanoTime();
+
+        TokenBucket(long capacity) {
+            this.tokens = capacity;
+        }
+
+        /**
+         * @return 0 while the bucket holds tokens, otherwise nanos until it does again
+         */
+        synchronized long getWait(long rate, long capacity) {
+            refill(rate, capacity);
+            return tokens > 0 ? 0 : (long) ((1 - tokens) * 1_000_000_000L / rate);
+        }
+
+        /**
+         * Takes the bytes even when they are not there, the bucket goes into debt.
+         *
+         * @return nanos until the debt is paid back, 0 when there is none
+         */
+        synchronized long charge(long bytes, long rate, long capacity) {
+            refill(rate, capacity);
+            tokens -= bytes;
+            return tokens >= 0 ? 0 : (long) (-tokens * 1_000_000_000L / rate);
+        }
+
+        synchronized boolean isIdle(long rate, long capacity) {
+            refill(rate, capacity);
+            return tokens >= capacity;
+        }
+
+        private void refill(long rate, long capacity) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - updatedNanos) * (double) rate / 1_000_000_000L);
+            updatedNanos = now;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.company.service;
+
+import com.company.dto.AttachDTO;
+import com.company.dto.UploadChunkDTO;
+import com.company.dto.UploadSessionDTO;
+import com.company.entity.AttachEntity;
+import com.company.entity.UploadChunkEntity;
+import com.company.entity.UploadSessionEntity;
+import com.company.enums.UploadSessionStatus;
+import com.company.exception.AppBadRequestException;
+import com.company.exception.ItemNotFoundException;
+import com.company.repository.UploadChunkRepository;
+import com.company.repository.UploadSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadSessionService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadChunkRepository uploadChunkRepository;
+    private final AttachService attachService;
+    private final UploadAdmissionService uploadAdmissionService;
+
+    @Value("${attach.session.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    // chunk writes in progress per session; the session file is local, so this instance sees all of them
+    private final Map<UUID, Integer> writerMap = new ConcurrentHashMap<>();
+
+
+    public UploadSessionDTO create(UploadSessionDTO dto) {
+        UploadSessionEntity entity = new UploadSessionEntity();
+        entity.setOriginalName(dto.getOriginalName());
+        entity.setExtension(attachService.getExtension(dto.getOriginalName()));
+        entity.setFileSize(dto.getFileSize());
+        entity.setExpiredDate(LocalDateTime.now().plusMinutes(ttlMinutes));
+
+        uploadSessionRepository.save(entity);
+
+        try {
+            Files.deleteIfExists(getPartPath(entity));
+            Files.createFile(getPartPath(entity));
+        } catch (IOException e) {
+            log.warn("Cannot create session file {}", entity.getId());
+            uploadSessionRepository.delete(entity);
+            throw new AppBadRequestException("Could not create the session!");
+        }
+        return toDTO(entity, new ArrayList<>());
+    }
+
+    /**
+     * Writes one chunk at the given offset straight from the request stream into the session file.
+     * Chunks may arrive in parallel and in any order, repeated chunks simply overwrite the same bytes.
+     * The writer is registered before the status is read, so a claim either sees it or it sees the claim.
+     */
+    public UploadSessionDTO writeChunk(String sessionId, long offset, InputStream in) {
+        UUID id = UUID.fromString(sessionId);
+        writerMap.merge(id, 1, Integer::sum);
+        try {
+            return writeChunk(getActiveById(sessionId), offset, in);
+        } finally {
+            writerMap.computeIfPresent(id, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private UploadSessionDTO writeChunk(UploadSessionEntity entity, long offset, InputStream in) {
+        String sessionId = entity.getId().toString();
+        if (!UploadSessionStatus.ACTIVE.equals(entity.getStatus())) {
+            log.warn("Session finishing {}", sessionId);
+            throw new AppBadRequestException("Upload is finishing!");
+        }
+
+        if (offset < 0 || offset >= entity.getFileSize()) {
+            log.warn("Invalid offset {} {}", sessionId, offset);
+            throw new AppBadRequestException("Invalid offset!");
+        }
+
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(getPartPath(entity), StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                uploadAdmissionService.throttle(read);
+                if (offset + written + read > entity.getFileSize()) {
+                    log.warn("Chunk out of range {} {}", sessionId, offset);
+                    throw new AppBadRequestException("Chunk exceeds file size!");
+                }
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                while (byteBuffer.hasRemaining()) {
+                    written += channel.write(byteBuffer, offset + written);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write chunk {} {}", sessionId, offset);
+            throw new AppBadRequestException(e.getMessage());
+        }
+
+        if (written > 0) {
+            UploadChunkEntity chunk = new UploadChunkEntity();
+            chunk.setSessionId(entity.getId());
+            chunk.setStartOffset(offset);
+            chunk.setLength(written);
+            uploadChunkRepository.save(chunk);
+        }
+
+        uploadSessionRepository.updateExpiredDate(LocalDateTime.now().plusMinutes(ttlMinutes), entity.getId());
+
+        return get(sessionId);
+    }
+
+    public UploadSessionDTO get(String sessionId) {
+        UploadSessionEntity entity = getActiveById(sessionId);
+        return toDTO(entity, getReceived(entity.getId()));
+    }
+
+    /**
+     * Turns a complete session into an attach. The assembled file is hashed with one streaming pass
+     * and moved into attachFolder without being copied, or dropped when the same content is already stored.
+     * The session is claimed first, so a second finish, a delete or the cleanup cannot take it meanwhile.
+     */
+    public AttachDTO finish(String sessionId) {
+        UploadSessionEntity entity = getActiveById(sessionId);
+        claim(entity);
+
+        boolean finished = false;
+        try {
+            if (getReceivedSize(getReceived(entity.getId())) != entity.getFileSize()) {
+                log.warn("Session not complete {}", sessionId);
+                throw new AppBadRequestException("Upload is not complete!");
+            }
+
+            Path part = getPartPath(entity);
+            AttachService.IngestFile ingestFile = new AttachService.IngestFile(part,
+                    entity.getFileSize(), attachService.checksum(part));
+
+            AttachEntity attachEntity = attachService.commit(ingestFile, entity.getOriginalName(),
+                    entity.getExtension());
+
+            remove(entity);
+            finished = true;
+            return attachService.toDTO(attachEntity);
+        } catch (IOException e) {
+            log.warn("Cannot finish session {}", sessionId);
+            throw new AppBadRequestException(e.getMessage());
+        } finally {
+            if (!finished) {
+                release(entity);
+            }
+        }
+    }
+
+    public Boolean delete(String sessionId) {
+        UploadSessionEntity entity = getById(sessionId);
+        claim(entity);
+        remove(entity);
+        return true;
+    }
+
+    /**
+     * Removes expired sessions nobody works on. A session left FINISHING by a crash is removed once its claim
+     * expired as well.
+     */
+    @Scheduled(fixedDelayString = "${attach.session.cleanup-ms:600000}")
+    public void deleteExpired() {
+        List<UploadSessionEntity> entityList = uploadSessionRepository.findAllByExpiredDateBefore(LocalDateTime.now());
+        int removed = 0;
+        for (UploadSessionEntity entity : entityList) {
+            if (UploadSessionStatus.ACTIVE.equals(entity.getStatus())) {
+                if (uploadSessionRepository.updateStatus(UploadSessionStatus.FINISHING, entity.getExpiredDate(),
+                        entity.getId(), UploadSessionStatus.ACTIVE) == 0) {
+                    continue;
+                }
+                if (writerMap.containsKey(entity.getId())) {
+                    release(entity);
+                    continue;
+                }
+            }
+            remove(entity);
+            removed++;
+        }
+        if (removed > 0) {
+            log.info("Expired upload sessions removed {}", removed);
+        }
+    }
+
+    public UploadSessionEntity getById(String id) {
+        return uploadSessionRepository.findById(UUID.fromString(id)).orElseThrow(() -> {
+            log.warn("Not found {}", id);
+            return new ItemNotFoundException("Not found!");
+        });
+    }
+
+    public UploadSessionEntity getActiveById(String id) {
+        UploadSessionEntity entity = getById(id);
+        if (entity.getExpiredDate().isBefore(LocalDateTime.now())) {
+            log.warn("Session expired {}", id);
+            throw new ItemNotFoundException("Session expired!");
+        }
+        return entity;
+    }
+
+    /**
+     * Received chunks merged into sorted, non overlapping ranges.
+     */
+    public List<UploadChunkDTO> getReceived(UUID sessionId) {
+        List<UploadChunkEntity> chunkList = uploadChunkRepository.findAllBySessionId(sessionId,
+                Sort.by(Sort.Direction.ASC, "startOffset"));
+
+        List<UploadChunkDTO> rangeList = new ArrayList<>();
+        UploadChunkDTO current = null;
+        for (UploadChunkEntity chunk : chunkList) {
+            long start = chunk.getStartOffset();
+            long end = start + chunk.getLength();
+            if (current != null && start <= current.getEnd()) {
+                current.setEnd(Math.max(current.getEnd(), end));
+            } else {
+                current = new UploadChunkDTO(start, end);
+                rangeList.add(current);
+            }
+        }
+        return rangeList;
+    }
+
+    public UploadSessionDTO toDTO(UploadSessionEntity entity, List<UploadChunkDTO> received) {
+        UploadSessionDTO dto = new UploadSessionDTO();
+        dto.setId(entity.getId().toString());
+        dto.setOriginalName(entity.getOriginalName());
+        dto.setFileSize(entity.getFileSize());
+        dto.setReceived(received);
+        dto.setReceivedSize(getReceivedSize(received));
+        dto.setComplete(dto.getReceivedSize().equals(entity.getFileSize()));
+        dto.setExpiredDate(entity.getExpiredDate());
+        dto.setCreatedDate(entity.getCreatedDate());
+        return dto;
+    }
+
+    private long getReceivedSize(List<UploadChunkDTO> received) {
+        return received.stream().mapToLong(range -> range.getEnd() - range.getStart()).sum();
+    }
+
+    /**
+     * ACTIVE to FINISHING, only one request gets it. Rejected while chunks are still being written.
+     */
+    private void claim(UploadSessionEntity entity) {
+        if (uploadSessionRepository.updateStatus(UploadSessionStatus.FINISHING,
+                LocalDateTime.now().plusMinutes(ttlMinutes), entity.getId(), UploadSessionStatus.ACTIVE) == 0) {
+            log.warn("Session finishing {}", entity.getId());
+            throw new AppBadRequestException("Upload is finishing!");
+        }
+        if (writerMap.containsKey(entity.getId())) {
+            release(entity);
+            log.warn("Session chunks in progress {}", entity.getId());
+            throw new AppBadRequestException("Chunks are still being uploaded!");
+        }
+    }
+
+    private void release(UploadSessionEntity entity) {
+        uploadSessionRepository.updateStatus(UploadSessionStatus.ACTIVE, LocalDateTime.now().plusMinutes(ttlMinutes),
+                entity.getId(), UploadSessionStatus.FINISHING);
+    }
+
+    private void remove(UploadSessionEntity entity) {
+        attachService.deleteTemp(getPartPath(entity));
+        uploadChunkRepository.deleteAllBySessionId(entity.getId());
+        uploadSessionRepository.delete(entity);
+    }
+
+    private Path getPartPath(UploadSessionEntity entity) {
+        try {
+            return attachService.getTempFolder().resolve("session-" + entity.getId() + ".part");
+        } catch (IOException e) {
+            log.warn("Cannot create temp folder");
+            throw new AppBadRequestException(e.getMessage());
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.company.entity.ProfileEntity;
 import com.company.entity.VideoEntity;
 import com.company.dto.VideoLikeDTO;
 import com.company.entity.VideoLikeEntity;
+import com.company.enums.LikeType;
 import com.company.exception.AppForbiddenException;
 import com.company.exception.ItemNotFoundException;
 import com.company.mapper.LikeCountSimpleMapper;
@@ -17,6 +18,7 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -30,6 +32,8 @@ public class VideoLikeService {
     private final VideoLikeRepository videoLikeRepository;
     private final ProfileService profileService;
     private final VideoService videoService;
+    private final VideoTrendingService videoTrendingService;
+    private final VideoRelatedService videoRelatedService;
 
 
     public VideoLikeDTO create(VideoLikeDTO dto, String profileId) {
@@ -41,8 +45,11 @@ public class VideoLikeService {
 
         if (oldLikeOptional.isPresent()) {
             VideoLikeEntity entity = oldLikeOptional.get();
+            boolean liked = LikeType.LIKE.equals(entity.getType());
             entity.setType(dto.getType());
+            entity.setUpdatedDate(LocalDateTime.now());
             videoLikeRepository.save(entity);
+            changeTrending(entity.getVideoId(), liked, LikeType.LIKE.equals(entity.getType()));
             return toDTO(entity);
         }
 
@@ -52,6 +59,7 @@ public class VideoLikeService {
         entity.setType(dto.getType());
 
         videoLikeRepository.save(entity);
+        changeTrending(entity.getVideoId(), false, LikeType.LIKE.equals(entity.getType()));
 
         return toDTO(entity);
     }
@@ -65,9 +73,23 @@ public class VideoLikeService {
         }
 
         videoLikeRepository.delete(entity);
+        changeTrending(entity.getVideoId(), LikeType.LIKE.equals(entity.getType()), false);
+        videoRelatedService.markDirty(entity.getVideoId());
         return true;
     }
 
+    /**
+     * Credits a like when a row becomes LIKE and takes it back when it stops being one, only after the row
+     * is saved, so toggling or deleting and liking again never counts one profile more than once.
+     */
+    private void changeTrending(UUID videoId, boolean liked, boolean likes) {
+        if (!liked && likes) {
+            videoTrendingService.addLike(videoId);
+        } else if (liked && !likes) {
+            videoTrendingService.removeLike(videoId);
+        }
+    }
+
     public PageImpl<VideoLikeDTO> getByProfileLikedVideo(int page, int size, String profileId) {
         ProfileEntity profileEntity = profileService.getById(profileId);
 
@@ -0,0 +1,247 @@
+package com.company.service;
+
+import com.company.mapper.RelatedSimpleMapper;
+import com.company.repository.PlaylistVideoRepository;
+import com.company.repository.VideoLikeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Related videos from likes and playlists: two videos are related when the same profiles liked both or
+ * the same playlists hold both. The similarity of videos a and b is
+ * (common likers + playlist-weight * common playlists) / sqrt(n(a) * n(b)), where n counts the likes
+ * and weighted playlists of a video.
+ * <p>
+ * A background job finds the videos whose likes or playlist entries changed since its last scan, recomputes
+ * their neighbours and writes each score into the neighbour's list as well, the measure being symmetric.
+ * Unlikes and removals from playlists leave no row to scan, those paths call {@link #markDirty}. A recompute
+ * also takes the video out of the lists of videos it is no longer related to. Every video keeps only its
+ * video.related.top-n best neighbours. The first scan covers all history, so the table builds up in batches
+ * after startup. A request only reads the list of one video.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VideoRelatedService {
+
+    private static final LocalDateTime MIN_DATE = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final Neighbour[] NO_NEIGHBOURS = new Neighbour[0];
+
+    private final VideoLikeRepository videoLikeRepository;
+    private final PlaylistVideoRepository playlistVideoRepository;
+
+    @Value("${video.related.top-n:20}")
+    private int topN;
+
+    // co-occurring videos read per video, the strongest ones
+    @Value("${video.related.candidates:500}")
+    private int candidates;
+
+    // latest likers of a video whose other likes are read, bounds the join for videos with many likes
+    @Value("${video.related.likers:1000}")
+    private int likers;
+
+    @Value("${video.related.playlist-weight:2}")
+    private double playlistWeight;
+
+    @Value("${video.related.batch-size:200}")
+    private int batchSize;
+
+    // rows committed late may carry a date before the previous scan, they are caught by this overlap
+    @Value("${video.related.overlap-seconds:60}")
+    private long overlapSeconds;
+
+    private final Map<UUID, Neighbour[]> neighbourMap = new ConcurrentHashMap<>();
+    private final Set<UUID> dirtySet = new LinkedHashSet<>();
+    // marked by request threads, drained into the dirty set by the job
+    private final Set<UUID> markedSet = ConcurrentHashMap.newKeySet();
+    // videos whose list holds the key video, only changed by the job
+    private final Map<UUID, Set<UUID>> holderMap = new HashMap<>();
+    private LocalDateTime since = MIN_DATE;
+
+
+    /**
+     * Neighbours of the video, most related first.
+     */
+    public List<UUID> related(UUID videoId, int size) {
+        Neighbour[] neighbours = neighbourMap.getOrDefault(videoId, NO_NEIGHBOURS);
+        List<UUID> idList = new ArrayList<>();
+        for (int i = 0; i < neighbours.length && i < size; i++) {
+            idList.add(neighbours[i].videoId);
+        }
+        return idList;
+    }
+
+    /**
+     * Recomputes the video on the next run, for changes that leave no dated row behind.
+     */
+    public void markDirty(UUID videoId) {
+        markedSet.add(videoId);
+    }
+
+    @Scheduled(initialDelayString = "${video.related.delay-ms:60000}", fixedDelayString = "${video.related.delay-ms:60000}")
+    public synchronized void refresh() {
+        try {
+            LocalDateTime scanned = LocalDateTime.now();
+            dirtySet.addAll(videoLikeRepository.findVideoIdChangedAfter(since));
+            dirtySet.addAll(playlistVideoRepository.findVideoIdChangedAfter(since));
+            since = scanned.minusSeconds(overlapSeconds);
+            drainMarked();
+        } catch (RuntimeException e) {
+            log.warn("Cannot scan related video changes {}", e.getMessage());
+            return;
+        }
+
+        int refreshed = 0;
+        Iterator<UUID> iterator = dirtySet.iterator();
+        while (iterator.hasNext() && refreshed < batchSize) {
+            UUID videoId = iterator.next();
+            try {
+                refresh(videoId);
+            } catch (RuntimeException e) {
+                log.warn("Cannot refresh related videos {} {}", videoId, e.getMessage());
+                break;
+            }
+            iterator.remove();
+            refreshed++;
+        }
+        if (refreshed > 0) {
+            log.info("Related videos refreshed {} left {}", refreshed, dirtySet.size());
+        }
+    }
+
+    private void drainMarked() {
+        Iterator<UUID> iterator = markedSet.iterator();
+        while (iterator.hasNext()) {
+            dirtySet.add(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private void refresh(UUID videoId) {
+        Map<UUID, Double> likeMap = new HashMap<>();
+        videoLikeRepository.getCoLikedVideos(videoId, likers, candidates).forEach(mapper ->
+                likeMap.put(UUID.fromString(mapper.getVideo_id()), (double) mapper.getWeight()));
+        Map<UUID, Double> commonMap = new HashMap<>();
+        playlistVideoRepository.getCoPlaylistVideos(videoId, candidates).forEach(mapper ->
+                commonMap.merge(UUID.fromString(mapper.getVideo_id()), playlistWeight * mapper.getWeight(), Double::sum));
+
+        if (likeMap.isEmpty() && commonMap.isEmpty()) {
+            put(videoId, NO_NEIGHBOURS);
+            withdraw(videoId, Collections.emptySet());
+            return;
+        }
+
+        Set<UUID> idSet = new HashSet<>(commonMap.keySet());
+        idSet.addAll(likeMap.keySet());
+        idSet.add(videoId);
+        Map<UUID, Double> sizeMap = new HashMap<>();
+        addSizes(sizeMap, videoLikeRepository.getLikeCountByVideoIdIn(idSet), 1);
+
+        // common likers were counted among the latest likers only, scaled up to all of them
+        double likeScale = Math.max(1, sizeMap.getOrDefault(videoId, 0d) / likers);
+        likeMap.forEach((id, common) -> commonMap.merge(id, common * likeScale, Double::sum));
+        addSizes(sizeMap, playlistVideoRepository.getPlaylistCountByVideoIdIn(idSet), playlistWeight);
+
+        double size = sizeMap.getOrDefault(videoId, 0d);
+        List<Neighbour> neighbourList = new ArrayList<>();
+        commonMap.forEach((id, common) -> {
+            double otherSize = sizeMap.getOrDefault(id, 0d);
+            if (size > 0 && otherSize > 0) {
+                neighbourList.add(new Neighbour(id, common / Math.sqrt(size * otherSize)));
+            }
+        });
+        neighbourList.sort(NEIGHBOUR_ORDER);
+        put(videoId, neighbourList.stream().limit(topN).toArray(Neighbour[]::new));
+
+        // the score is symmetric, offer it to the other side as well and take back the stale ones
+        Set<UUID> relatedSet = new HashSet<>();
+        neighbourList.forEach(neighbour -> relatedSet.add(neighbour.videoId));
+        withdraw(videoId, relatedSet);
+        neighbourList.forEach(neighbour -> offer(neighbour.videoId, new Neighbour(videoId, neighbour.score)));
+    }
+
+    /**
+     * Takes the video out of the lists of every video not in the related set. The freed slot is filled when
+     * that video is recomputed.
+     */
+    private void withdraw(UUID videoId, Set<UUID> relatedSet) {
+        Set<UUID> holderSet = holderMap.get(videoId);
+        if (holderSet == null) {
+            return;
+        }
+        for (UUID holderId : new ArrayList<>(holderSet)) {
+            if (relatedSet.contains(holderId)) {
+                continue;
+            }
+            Neighbour[] neighbours = neighbourMap.getOrDefault(holderId, NO_NEIGHBOURS);
+            put(holderId, Arrays.stream(neighbours).filter(n -> !n.videoId.equals(videoId)).toArray(Neighbour[]::new));
+        }
+    }
+
+    private void addSizes(Map<UUID, Double> sizeMap, List<RelatedSimpleMapper> mapperList, double weight) {
+        mapperList.forEach(mapper ->
+                sizeMap.merge(UUID.fromString(mapper.getVideo_id()), weight * mapper.getWeight(), Double::sum));
+    }
+
+    /**
+     * Replaces or adds the neighbour in the list of the video, keeping the best top-n. Lists are replaced,
+     * never changed, so readers need no lock.
+     */
+    private void offer(UUID videoId, Neighbour neighbour) {
+        Neighbour[] neighbours = neighbourMap.getOrDefault(videoId, NO_NEIGHBOURS);
+        if (neighbours.length == topN && NEIGHBOUR_ORDER.compare(neighbour, neighbours[topN - 1]) > 0
+                && Arrays.stream(neighbours).noneMatch(n -> n.videoId.equals(neighbour.videoId))) {
+            return;
+        }
+        List<Neighbour> neighbourList = new ArrayList<>(neighbours.length + 1);
+        for (Neighbour n : neighbours) {
+            if (!n.videoId.equals(neighbour.videoId)) {
+                neighbourList.add(n);
+            }
+        }
+        neighbourList.add(neighbour);
+        neighbourList.sort(NEIGHBOUR_ORDER);
+        put(videoId, neighbourList.stream().limit(topN).toArray(Neighbour[]::new));
+    }
+
+    /**
+     * Replaces the list of the video and keeps the holder map in step with it.
+     */
+    private void put(UUID videoId, Neighbour[] neighbours) {
+        Neighbour[] old = neighbours.length == 0 ? neighbourMap.remove(videoId) : neighbourMap.put(videoId, neighbours);
+        if (old != null) {
+            for (Neighbour neighbour : old) {
+                Set<UUID> holderSet = holderMap.get(neighbour.videoId);
+                if (holderSet != null && holderSet.remove(videoId) && holderSet.isEmpty()) {
+                    holderMap.remove(neighbour.videoId);
+                }
+            }
+        }
+        for (Neighbour neighbour : neighbours) {
+            holderMap.computeIfAbsent(neighbour.videoId, id -> new HashSet<>()).add(videoId);
+        }
+    }
+
+    // best first
+    private static final Comparator<Neighbour> NEIGHBOUR_ORDER = Comparator.<Neighbour>comparingDouble(n -> -n.score)
+            .thenComparing(n -> n.videoId);
+
+    private static class Neighbour {
+
+        private final UUID videoId;
+        private final double score;
+
+        Neighbour(UUID videoId, double score) {
+            this.videoId = videoId;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.company.service;
+
+import com.company.entity.VideoEntity;
+import com.company.enums.VideoStatus;
+import com.company.mapper.VideoTextMapper;
+import com.company.repository.VideoRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over title and description of public videos, ranked with BM25.
+ * Title terms count {@value #TITLE_WEIGHT} times, as if the title were repeated in a single field.
+ * <p>
+ * Documents get increasing int ids; an update deletes the old id and appends a new one, so posting lists
+ * stay sorted and append-only. Deleted ids are skipped at query time and dropped by a periodic compaction.
+ * The index is loaded in the background after startup and kept current by VideoService.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VideoSearchService {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int TITLE_WEIGHT = 3;
+    // postgres orders uuids as unsigned bytes, so the all zero id comes first
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    private final VideoRepository videoRepository;
+
+    @Value("${video.search.load-batch:1000}")
+    private int loadBatch;
+
+    @Value("${video.search.compact-ratio:0.25}")
+    private double compactRatio;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Postings> postingMap = new HashMap<>();
+    private final Map<UUID, Integer> docIdMap = new HashMap<>();
+    private List<UUID> videoIdList = new ArrayList<>();
+    private int[] docLength = new int[1024];
+    // postings of each document, so a delete can lower the live document frequency of its terms
+    private Postings[][] docPostings = new Postings[1024][];
+    private BitSet deleted = new BitSet();
+    private long totalLength;
+
+    // videos changed while the initial load runs, the loader must not add its older copy of them
+    private Set<UUID> changedDuringLoad = new HashSet<>();
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Thread thread = new Thread(this::loadAll, "video-search-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void loadAll() {
+        long started = System.currentTimeMillis();
+        UUID lastId = MIN_ID;
+        int count = 0;
+        try {
+            while (true) {
+                List<VideoTextMapper> page = videoRepository.findTextPage(VideoStatus.PUBLIC, lastId,
+                        PageRequest.of(0, loadBatch));
+                if (page.isEmpty()) {
+                    break;
+                }
+                lock.writeLock().lock();
+                try {
+                    for (VideoTextMapper video : page) {
+                        if (!changedDuringLoad.contains(video.getId()) && !docIdMap.containsKey(video.getId())) {
+                            add(video.getId(), video.getTitle(), video.getDescription());
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                count += page.size();
+                lastId = page.get(page.size() - 1).getId();
+            }
+            log.info("Video search index loaded {} videos in {} ms", count, System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.warn("Cannot load video search index {}", e.getMessage());
+        } finally {
+            lock.writeLock().lock();
+            changedDuringLoad = null;
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds, replaces or removes the video depending on whether it can be found by search.
+     */
+    public void index(VideoEntity entity) {
+        index(entity.getId(), entity.getTitle(), entity.getDescription(),
+                VideoStatus.PUBLIC.equals(entity.getStatus()) && Boolean.TRUE.equals(entity.getVisible()));
+    }
+
+    public void index(UUID videoId, String title, String description, boolean searchable) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringLoad != null) {
+                changedDuringLoad.add(videoId);
+            }
+            delete(videoId);
+            if (searchable) {
+                add(videoId, title, description);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID videoId) {
+        index(videoId, null, null, false);
+    }
+
+    /**
+     * Ids of the best matching videos for the page, any query term may match.
+     */
+    public SearchResult search(String query, int page, int size) {
+        List<String> termList = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (termList.isEmpty() || size <= 0 || page < 0) {
+            return new SearchResult(new ArrayList<>(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            int liveCount = docIdMap.size();
+            if (liveCount == 0) {
+                return new SearchResult(new ArrayList<>(), 0);
+            }
+            float averageLength = (float) totalLength / liveCount;
+
+            List<Postings> postingsList = new ArrayList<>();
+            long candidates = 0;
+            for (String term : termList) {
+                Postings postings = postingMap.get(term);
+                if (postings != null && postings.live > 0) {
+                    postingsList.add(postings);
+                    candidates += postings.live;
+                }
+            }
+            // only matched documents get a slot, sized up front for every document that can match
+            ScoreMap scores = new ScoreMap((int) Math.min(candidates, liveCount));
+
+            for (Postings postings : postingsList) {
+                int df = postings.live;
+                float idf = (float) Math.log(1 + (liveCount - df + 0.5) / (df + 0.5));
+
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    if (deleted.get(doc)) {
+                        continue;
+                    }
+                    int tf = postings.frequencies[i];
+                    float norm = K1 * (1 - B + B * docLength[doc] / averageLength);
+                    scores.add(doc, idf * tf * (K1 + 1) / (tf + norm));
+                }
+            }
+
+            // bounded min-heap of the best (page + 1) * size slots, newer documents win ties
+            int[] docs = scores.docs;
+            float[] values = scores.values;
+            long limit = Math.min((long) (page + 1) * size, scores.size);
+            PriorityQueue<Integer> heap = new PriorityQueue<>((x, y) -> values[x] != values[y]
+                    ? Float.compare(values[x], values[y]) : Integer.compare(docs[x], docs[y]));
+            for (int slot = 0; slot < docs.length; slot++) {
+                if (docs[slot] < 0) {
+                    continue;
+                }
+                heap.offer(slot);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+            LinkedList<UUID> ranked = new LinkedList<>();
+            while (!heap.isEmpty()) {
+                ranked.addFirst(videoIdList.get(docs[heap.poll()]));
+            }
+            int from = (int) Math.min((long) page * size, ranked.size());
+            return new SearchResult(new ArrayList<>(ranked.subList(from, ranked.size())), scores.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Renumbers the documents once enough of them are deleted, dropping their postings.
+     */
+    @Scheduled(fixedDelayString = "${video.search.compact-ms:600000}")
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            int deletedCount = deleted.cardinality();
+            if (deletedCount == 0 || deletedCount < videoIdList.size() * compactRatio) {
+                return;
+            }
+            int[] newIds = new int[videoIdList.size()];
+            List<UUID> newVideoIdList = new ArrayList<>(docIdMap.size());
+            int[] newDocLength = new int[Math.max(1024, docIdMap.size())];
+            Postings[][] newDocPostings = new Postings[newDocLength.length][];
+            for (int doc = 0; doc < videoIdList.size(); doc++) {
+                if (deleted.get(doc)) {
+                    newIds[doc] = -1;
+                    continue;
+                }
+                newIds[doc] = newVideoIdList.size();
+                newDocLength[newVideoIdList.size()] = docLength[doc];
+                newDocPostings[newVideoIdList.size()] = docPostings[doc];
+                docIdMap.put(videoIdList.get(doc), newVideoIdList.size());
+                newVideoIdList.add(videoIdList.get(doc));
+            }
+            postingMap.values().removeIf(postings -> postings.remap(newIds) == 0);
+
+            videoIdList = newVideoIdList;
+            docLength = newDocLength;
+            docPostings = newDocPostings;
+            deleted = new BitSet();
+            log.info("Video search index compacted, {} deleted documents dropped", deletedCount);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Case folded letter/digit runs with diacritics removed; single characters are skipped.
+     */
+    public List<String> tokenize(String text) {
+        List<String> tokenList = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokenList;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+
+        StringBuilder token = new StringBuilder();
+        normalized.codePoints().forEach(codePoint -> {
+            if (Character.isLetterOrDigit(codePoint)) {
+                token.appendCodePoint(codePoint);
+            } else {
+                addToken(tokenList, token);
+            }
+        });
+        addToken(tokenList, token);
+        return tokenList;
+    }
+
+    private void addToken(List<String> tokenList, StringBuilder token) {
+        if (token.length() > 1) {
+            tokenList.add(token.toString());
+        }
+        token.setLength(0);
+    }
+
+    private void add(UUID videoId, String title, String description) {
+        Map<String, Integer> frequencyMap = new HashMap<>();
+        List<String> titleList = tokenize(title);
+        List<String> descriptionList = tokenize(description);
+        titleList.forEach(term -> frequencyMap.merge(term, TITLE_WEIGHT, Integer::sum));
+        descriptionList.forEach(term -> frequencyMap.merge(term, 1, Integer::sum));
+
+        int doc = videoIdList.size();
+        videoIdList.add(videoId);
+        docIdMap.put(videoId, doc);
+        if (doc == docLength.length) {
+            docLength = Arrays.copyOf(docLength, doc * 2);
+            docPostings = Arrays.copyOf(docPostings, doc * 2);
+        }
+        docLength[doc] = titleList.size() * TITLE_WEIGHT + descriptionList.size();
+        totalLength += docLength[doc];
+
+        Postings[] termPostings = new Postings[frequencyMap.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : frequencyMap.entrySet()) {
+            Postings postings = postingMap.computeIfAbsent(entry.getKey(), t -> new Postings());
+            postings.add(doc, entry.getValue());
+            termPostings[i++] = postings;
+        }
+        docPostings[doc] = termPostings;
+    }
+
+    private void delete(UUID videoId) {
+        Integer doc = docIdMap.remove(videoId);
+        if (doc != null) {
+            deleted.set(doc);
+            totalLength -= docLength[doc];
+            for (Postings postings : docPostings[doc]) {
+                postings.live--;
+            }
+            docPostings[doc] = null;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class SearchResult {
+        private final List<UUID> videoIdList;
+        private final long total;
+    }
+
+    private static class Postings {
+
+        private int[] docs = new int[2];
+        private int[] frequencies = new int[2];
+        private int size;
+        // documents not deleted, the document frequency of the term; size also counts deleted ones
+        private int live;
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+        }
+
+        /**
+         * @return postings left
+         */
+        int remap(int[] newIds) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = newIds[docs[i]];
+                if (doc >= 0) {
+                    docs[kept] = doc;
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return kept;
+        }
+    }
+
+    /**
+     * Open addressing int to float map holding the scores of the matched documents only.
+     */
+    private static class ScoreMap {
+
+        private final int[] docs;
+        private final float[] values;
+        private final int mask;
+        private int size;
+
+        /**
+         * @param capacity most keys ever added, the table is kept at most half full
+         */
+        ScoreMap(int capacity) {
+            int length = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+            docs = new int[length];
+            values = new float[length];
+            mask = length - 1;
+            Arrays.fill(docs, -1);
+        }
+
+        void add(int doc, float value) {
+            int slot = (doc * 0x9E3779B9) >>> 1 & mask;
+            while (docs[slot] >= 0 && docs[slot] != doc) {
+                slot = (slot + 1) & mask;
+            }
+            if (docs[slot] < 0) {
+                docs[slot] = doc;
+                size++;
+            }
+            values[slot] += value;
+        }
+    }
+}
@@ -4,7 +4,9 @@ import com.company.dto.*;
 import com.company.entity.*;
 import com.company.enums.LikeType;
 import com.company.enums.ProfileRole;
+import com.company.enums.SuggestType;
 import com.company.enums.VideoStatus;
+import com.company.enums.VideoType;
 import com.company.exception.AppBadRequestException;
 import com.company.exception.AppForbiddenException;
 import com.company.exception.ItemNotFoundException;
@@ -14,6 +16,7 @@ import com.company.repository.PlaylistRepository;
 import com.company.repository.PlaylistVideoRepository;
 import com.company.repository.VideoLikeRepository;
 import com.company.repository.VideoRepository;
+import com.company.util.CursorUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -23,6 +26,7 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 
 @Slf4j
 @Service
@@ -37,11 +41,21 @@ public class VideoService {
     private final AttachService attachService;
     private final ProfileService profileService;
     private final VideoLikeRepository videoLikeRepository;
+    private final VideoViewCounterService videoViewCounterService;
+    private final VideoViewerService videoViewerService;
+    private final VideoSearchService videoSearchService;
+    private final VideoSuggestService videoSuggestService;
+    private final VideoTagIndexService videoTagIndexService;
+    private final VideoTrendingService videoTrendingService;
+    private final VideoRelatedService videoRelatedService;
 
 
     @Value("${server.domain.name}")
     private String domainName;
 
+    @Value("${video.profile-likes-size:20}")
+    private int profileLikesSize;
+
 
     public VideoDTO create(VideoDTO dto, String profileId) {
         ChannelEntity channelEntity = channelService.getById(dto.getChannelId());
@@ -65,8 +79,10 @@ public class VideoService {
         entity.setCategoryId(categoryEntity.getId());
         entity.setAttachId(attachEntity.getId());
         entity.setChannelId(channelEntity.getId());
+        entity.setDuration(attachEntity.getDuration());
 
         videoRepository.save(entity);
+        videoSearchService.index(entity);
 
         return toFullDTO(entity);
     }
@@ -84,6 +100,8 @@ public class VideoService {
         entity.setUpdatedDate(LocalDateTime.now());
 
         videoRepository.save(entity);
+        videoSearchService.index(entity);
+        videoSuggestService.index(entity);
 
         return toFullDTO(entity);
     }
@@ -99,32 +117,39 @@ public class VideoService {
             switch (entity.getStatus()) {
                 case CREATED -> {
                     videoRepository.updateStatusAndPublishedDate(VideoStatus.PUBLIC, LocalDateTime.now(), entity.getId());
+                    entity.setStatus(VideoStatus.PUBLIC);
                 }
                 case PUBLIC -> {
                     videoRepository.updateStatus(VideoStatus.PRIVATE, entity.getId());
+                    entity.setStatus(VideoStatus.PRIVATE);
                 }
                 case PRIVATE -> {
                     videoRepository.updateStatus(VideoStatus.PUBLIC, entity.getId());
+                    entity.setStatus(VideoStatus.PUBLIC);
                 }
             }
+            videoSearchService.index(entity);
+            videoSuggestService.index(entity);
+            videoTagIndexService.index(entity);
+            if (!VideoStatus.PUBLIC.equals(entity.getStatus())) {
+                videoTrendingService.remove(entity.getId());
+            }
             return true;
         }
         log.warn("Not access {}", profileId);
         throw new AppForbiddenException("Not access!");
     }
 
-    public List<VideoDTO> searchResult(String search) {
-        List<VideoDTO> dtoList = new ArrayList<>();
+    public PageImpl<VideoDTO> searchResult(String search, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
 
-        List<VideoEntity> entityList = videoRepository.findAllByTitleAndStatusAndVisible(search,
-                VideoStatus.PUBLIC,
-                true,
-                Sort.by(Sort.Direction.DESC, "publishedDate"));
+        VideoSearchService.SearchResult result = videoSearchService.search(search, page, size);
 
-        entityList.forEach(entity -> {
-            dtoList.add(toShortDTO(entity));
-        });
-        return dtoList;
+        return new PageImpl<>(toShortDTOList(result.getVideoIdList()), pageable, result.getTotal());
+    }
+
+    public List<SuggestDTO> suggest(String query, int size) {
+        return videoSuggestService.suggest(query, size);
     }
 
     public Boolean updatePreviewPhoto(VideoPreviewPhotoDTO dto, String videoId, String profileId) {
@@ -143,18 +168,50 @@ public class VideoService {
             }
             String oldAttach = entity.getPreviewAttachId().toString();
             videoRepository.updatePreviewPhoto(attachEntity.getId(), entity.getId());
+            attachService.createDerivatives(attachEntity);
             attachService.delete(oldAttach);
             return true;
         }
         videoRepository.updatePreviewPhoto(attachEntity.getId(), entity.getAttachId());
+        attachService.createDerivatives(attachEntity);
         return true;
     }
 
-    public void updateViewCount(String videoId) {
-        VideoEntity entity = getByIdAndStatus(videoId, VideoStatus.PUBLIC);
-        videoRepository.updateViewCount(entity.getId());
+    /**
+     * Counted in memory and written by VideoViewCounterService in batches.
+     *
+     * @param viewer profile id or client fingerprint, added to the unique viewer sketch
+     */
+    public void updateViewCount(String videoId, String viewer) {
+        UUID id = UUID.fromString(videoId);
+        if (!videoViewCounterService.isKnown(id)) {
+            VideoEntity entity = getByIdAndStatus(videoId, VideoStatus.PUBLIC);
+            videoViewCounterService.markKnown(entity.getId());
+        }
+        videoViewCounterService.increment(id);
+        videoViewerService.add(id, viewer);
+        videoTrendingService.addView(id);
+    }
+
+
+    /**
+     * Trending videos from memory, of one category or of all, of one type or of both.
+     */
+    public List<VideoDTO> trending(String categoryId, VideoType type, int size) {
+        UUID id = null;
+        if (categoryId != null && !categoryId.isBlank()) {
+            id = categoryService.getById(categoryId).getId();
+        }
+        return toShortDTOList(videoTrendingService.top(id, type, size));
     }
 
+    /**
+     * Videos related by likes and playlists, read from the precomputed neighbours of the video.
+     */
+    public List<VideoDTO> related(String videoId, int size) {
+        VideoEntity entity = getById(videoId);
+        return toShortDTOList(videoRelatedService.related(entity.getId(), size));
+    }
 
     public PageImpl<VideoDTO> paginationByCategoryId(int page, int size, String categoryId) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "publishedDate"));
@@ -167,6 +224,7 @@ public class VideoService {
                 VideoStatus.PUBLIC,
                 true,
                 pageable);
+        preloadAttaches(entityPage.getContent());
 
         entityPage.forEach(entity -> {
             dtoList.add(toShortDTO(entity));
@@ -175,25 +233,31 @@ public class VideoService {
     }
 
     /**
-     * paginationByTagId
+     * Public videos having all (match=and) or any (match=or) of the tags, newest published first.
+     * Answered from the tag bitmaps, only the videos of the page are read.
      */
-    /*public PageImpl<VideoDTO> paginationByTagId(int page, int size, String tagId) {
-
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "publishedDate"));
-
-        TagEntity tagEntity = tagService.get(tagId);
+    public PageImpl<VideoDTO> paginationByTagId(List<String> tagIdList, String match, int page, int size) {
+        if (tagIdList == null || tagIdList.isEmpty()) {
+            log.warn("Tag required");
+            throw new AppBadRequestException("Tag required!");
+        }
+        if (!"and".equalsIgnoreCase(match) && !"or".equalsIgnoreCase(match)) {
+            log.warn("Match not valid {}", match);
+            throw new AppBadRequestException("Match not valid!");
+        }
+        Set<UUID> tagIdSet = new HashSet<>();
+        try {
+            tagIdList.forEach(tagId -> tagIdSet.add(UUID.fromString(tagId)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Tag not valid {}", tagIdList);
+            throw new AppBadRequestException("Tag not valid!");
+        }
 
-        List<VideoDTO> dtoList = new ArrayList<>();
+        PageImpl<UUID> idPage = videoTagIndexService.find(tagIdSet, "and".equalsIgnoreCase(match), page, size);
 
-        Page<VideoEntity> entityPage = videoRepository.findAllByTagIdAndStatus(tagEntity.getId(),
-                VideoStatus.PUBLIC,
-                pageable);
+        return new PageImpl<>(toShortDTOList(idPage.getContent()), idPage.getPageable(), idPage.getTotalElements());
+    }
 
-        entityPage.forEach(entity -> {
-            dtoList.add(toDTO(entity));
-        });
-        return new PageImpl<>(dtoList, pageable, entityPage.getTotalElements());
-    }*/
     public PageImpl<VideoPlaylistDTO> pagination(int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdDate"));
 
@@ -202,11 +266,22 @@ public class VideoService {
         List<VideoPlaylistDTO> dtoVideoPlaylist = new ArrayList<>();
 
         Page<VideoEntity> entityPage = videoRepository.findAll(pageable);
+        preloadAttaches(entityPage.getContent());
+
+        List<UUID> videoIdList = entityPage.stream().map(VideoEntity::getId).toList();
+
+        // first playlist of each video, all of them fetched with one query
+        Map<UUID, PlaylistEntity> playlistMap = new HashMap<>();
+        if (!videoIdList.isEmpty()) {
+            playlistVideoRepository.findAllByVideoIdIn(videoIdList).forEach(playlistVideoEntity ->
+                    playlistMap.putIfAbsent(playlistVideoEntity.getVideoId(), playlistVideoEntity.getPlaylist()));
+        }
+        Map<UUID, PlaylistDTO> playlistDTOMap = toShortPlaylistDTOMap(playlistMap.values());
 
         entityPage.forEach(entity -> {
-            PlaylistVideoEntity playlistVideoEntity = getByVideoId(entity.getId());
-            if (Optional.ofNullable(playlistVideoEntity).isPresent()) {
-                dtoPlaylist.add(toShortPlaylistDTO(playlistVideoEntity.getPlaylist()));
+            PlaylistEntity playlistEntity = playlistMap.get(entity.getId());
+            if (Optional.ofNullable(playlistEntity).isPresent()) {
+                dtoPlaylist.add(playlistDTOMap.get(playlistEntity.getId()));
             }
             dtoVideoList.add(toShortDTO(entity));
         });
@@ -226,6 +301,7 @@ public class VideoService {
                 VideoStatus.PUBLIC,
                 true,
                 pageable);
+        preloadAttaches(entityPage.getContent());
 
         entityPage.forEach(entity -> {
             dtoList.add(toShortDTO(entity));
@@ -234,6 +310,75 @@ public class VideoService {
         return new PageImpl<>(dtoList, pageable, entityPage.getTotalElements());
     }
 
+    /**
+     * Category feed by cursor, seeks past the last video of the previous page instead of skipping rows.
+     *
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param count  also count all videos of the category
+     */
+    public CursorPageDTO<VideoDTO> feedByCategoryId(String categoryId, String cursor, int size, boolean count) {
+        CategoryEntity categoryEntity = categoryService.getById(categoryId);
+        Pageable pageable = feedPageable(size);
+
+        List<VideoEntity> entityList;
+        if (cursor == null || cursor.isBlank()) {
+            entityList = videoRepository.findCategoryFeed(categoryEntity.getId(), VideoStatus.PUBLIC, pageable);
+        } else {
+            CursorUtil.Cursor position = CursorUtil.decode(cursor);
+            entityList = videoRepository.findCategoryFeedAfter(categoryEntity.getId(), VideoStatus.PUBLIC,
+                    position.getDate(), position.getId(), pageable);
+        }
+        Long total = count
+                ? videoRepository.countByCategoryIdAndStatusAndVisible(categoryEntity.getId(), VideoStatus.PUBLIC, true)
+                : null;
+        return toFeed(entityList, size, VideoEntity::getPublishedDate, total);
+    }
+
+    /**
+     * Channel feed by cursor, like {@link #feedByCategoryId} but ordered by created date.
+     */
+    public CursorPageDTO<VideoDTO> feedByChannelId(String channelId, String cursor, int size, boolean count) {
+        ChannelEntity channelEntity = channelService.getById(channelId);
+        Pageable pageable = feedPageable(size);
+
+        List<VideoEntity> entityList;
+        if (cursor == null || cursor.isBlank()) {
+            entityList = videoRepository.findChannelFeed(channelEntity.getId(), VideoStatus.PUBLIC, pageable);
+        } else {
+            CursorUtil.Cursor position = CursorUtil.decode(cursor);
+            entityList = videoRepository.findChannelFeedAfter(channelEntity.getId(), VideoStatus.PUBLIC,
+                    position.getDate(), position.getId(), pageable);
+        }
+        Long total = count
+                ? videoRepository.countByChannelIdAndStatusAndVisible(channelEntity.getId(), VideoStatus.PUBLIC, true)
+                : null;
+        return toFeed(entityList, size, VideoEntity::getCreatedDate, total);
+    }
+
+    private Pageable feedPageable(int size) {
+        if (size < 1) {
+            log.warn("Size not valid {}", size);
+            throw new AppBadRequestException("Size not valid!");
+        }
+        // one row more than asked tells whether there is a next page
+        return PageRequest.of(0, size + 1);
+    }
+
+    private CursorPageDTO<VideoDTO> toFeed(List<VideoEntity> entityList, int size,
+                                           Function<VideoEntity, LocalDateTime> sortDate, Long total) {
+        List<VideoEntity> pageList = entityList.stream().limit(size).toList();
+        preloadAttaches(pageList);
+        List<VideoDTO> dtoList = new ArrayList<>();
+        pageList.forEach(entity -> dtoList.add(toShortDTO(entity)));
+
+        String nextCursor = null;
+        if (entityList.size() > size) {
+            VideoEntity last = entityList.get(size - 1);
+            nextCursor = CursorUtil.encode(sortDate.apply(last), last.getId());
+        }
+        return new CursorPageDTO<>(dtoList, nextCursor, total);
+    }
+
     public Boolean delete(String videoId, String profileId) {
         VideoEntity entity = getById(videoId);
 
@@ -243,6 +388,10 @@ public class VideoService {
         }
 
         videoRepository.updateVisible(entity.getId());
+        videoSearchService.remove(entity.getId());
+        videoSuggestService.remove(SuggestType.VIDEO, entity.getId());
+        videoTagIndexService.remove(entity.getId());
+        videoTrendingService.remove(entity.getId());
 
         attachService.delete(entity.getAttachId().toString());
 
@@ -294,31 +443,83 @@ public class VideoService {
                 .orElse(null);
     }
 
-    public PlaylistDTO toShortPlaylistDTO(PlaylistEntity entity) {
-        PlaylistDTO dto = new PlaylistDTO();
-        dto.setId(entity.getId().toString());
-        dto.setName(entity.getName());
+    /**
+     * Short playlist DTOs of many playlists, with video counts and the first two videos
+     * fetched with one query each.
+     */
+    public Map<UUID, PlaylistDTO> toShortPlaylistDTOMap(Collection<PlaylistEntity> entityList) {
+        Map<UUID, PlaylistDTO> dtoMap = new HashMap<>();
+        if (entityList.isEmpty()) {
+            return dtoMap;
+        }
+        Set<UUID> playlistIdSet = new HashSet<>();
+        entityList.forEach(entity -> playlistIdSet.add(entity.getId()));
+
+        Map<UUID, Integer> countMap = new HashMap<>();
+        playlistVideoRepository.getVideoCountByPlaylistIdIn(playlistIdSet).forEach(mapper ->
+                countMap.put(mapper.getPlaylistId(), mapper.getVideoCount().intValue()));
+
+        Map<String, List<VideoDTO>> videoMap = new HashMap<>();
+        playlistVideoRepository.getTop2VideoByPlaylistIdIn(playlistIdSet).forEach(mapper -> {
+            VideoDTO videoDTO = new VideoDTO();
+            videoDTO.setId(mapper.getVideo_id());
+            videoDTO.setTitle(mapper.getTitle());
+            videoDTO.setUrl(toOpenUrl(mapper.getVideo_id()));
+            videoDTO.setDuration(mapper.getDuration());
+            videoMap.computeIfAbsent(mapper.getPlaylist_id(), id -> new ArrayList<>()).add(videoDTO);
+        });
+
+        entityList.forEach(entity -> {
+            if (dtoMap.containsKey(entity.getId())) {
+                return;
+            }
+            PlaylistDTO dto = new PlaylistDTO();
+            dto.setId(entity.getId().toString());
+            dto.setName(entity.getName());
+            dto.setChannel(new ChannelDTO(channelService.toOpenUrl(entity.getChannelId().toString())));
+            dto.setVideoCount(countMap.getOrDefault(entity.getId(), 0));
+            dto.setVideoList(videoMap.getOrDefault(entity.getId().toString(), new ArrayList<>()));
+            dto.setCreatedDate(entity.getCreatedDate());
+            dtoMap.put(entity.getId(), dto);
+        });
+        return dtoMap;
+    }
 
-        ChannelDTO ChannelDTO = new ChannelDTO(channelService.toOpenUrl(entity.getChannelId().toString()));
-        dto.setChannel(ChannelDTO);
+    public PlaylistDTO toShortPlaylistDTO(PlaylistEntity entity) {
+        return toShortPlaylistDTOMap(List.of(entity)).get(entity.getId());
+    }
 
-        dto.setVideoCount(playlistVideoRepository.getVideoCountByPlaylistId(entity.getId()));
+    /**
+     * Short DTOs in the order of the ids, videos hidden since the ids were taken are skipped.
+     */
+    private List<VideoDTO> toShortDTOList(List<UUID> idList) {
+        Map<UUID, VideoEntity> entityMap = new HashMap<>();
+        videoRepository.findAllById(idList).forEach(entity -> entityMap.put(entity.getId(), entity));
 
+        preloadAttaches(entityMap.values());
 
-        List<VideoDTO> videoList = playlistVideoRepository.getTop2VideoByPlaylistId(entity.getId())
-                .stream()
-                .map(playlistVideoEntity -> {
-                    VideoDTO videoDTO = new VideoDTO();
-                    videoDTO.setId(playlistVideoEntity.getVideoId().toString());
-                    videoDTO.setTitle(playlistVideoEntity.getVideo().getTitle());
-                    videoDTO.setUrl(toOpenUrl(playlistVideoEntity.getVideoId().toString()));
-                    videoDTO.setDuration(playlistVideoEntity.getVideo().getDuration());
-                    return videoDTO;
-                }).toList();
+        List<VideoDTO> dtoList = new ArrayList<>();
+        idList.forEach(id -> {
+            VideoEntity entity = entityMap.get(id);
+            if (entity != null && VideoStatus.PUBLIC.equals(entity.getStatus()) && Boolean.TRUE.equals(entity.getVisible())) {
+                dtoList.add(toShortDTO(entity));
+            }
+        });
+        return dtoList;
+    }
 
-        dto.setVideoList(videoList);
-        dto.setCreatedDate(entity.getCreatedDate());
-        return dto;
+    /**
+     * Video and preview attach rows of a listing in one query, see {@link AttachService#preload}.
+     */
+    private void preloadAttaches(Collection<VideoEntity> entityList) {
+        List<String> attachIdList = new ArrayList<>();
+        entityList.forEach(entity -> {
+            attachIdList.add(entity.getAttachId().toString());
+            if (entity.getPreviewAttachId() != null) {
+                attachIdList.add(entity.getPreviewAttachId().toString());
+            }
+        });
+        attachService.preload(attachIdList);
     }
 
     public VideoDTO toShortDTO(VideoEntity entity) {
@@ -326,7 +527,7 @@ public class VideoService {
         dto.setId(entity.getId().toString());
         dto.setTitle(entity.getTitle());
 
-        dto.setViewCount(entity.getViewCount());
+        dto.setViewCount(getViewCount(entity));
 
         dto.setChannel(new ChannelDTO(channelService.toOpenUrl(entity.getChannelId().toString())));
 
@@ -337,7 +538,7 @@ public class VideoService {
         }
 
         dto.setDuration(entity.getDuration());
-        dto.setPublishedDate(dto.getPublishedDate());
+        dto.setPublishedDate(entity.getPublishedDate());
         return dto;
     }
 
@@ -350,7 +551,8 @@ public class VideoService {
         dto.setType(entity.getType());
         dto.setStatus(entity.getStatus());
         dto.setSharedCount(entity.getSharedCount());
-        dto.setViewCount(entity.getViewCount());
+        dto.setViewCount(getViewCount(entity));
+        dto.setUniqueViewers(videoViewerService.getUniqueViewers(entity.getId()));
 
         dto.setChannel(new ChannelDTO(channelService.toOpenUrl(entity.getChannelId().toString())));
 
@@ -362,24 +564,38 @@ public class VideoService {
 
         dto.setCategory(new CategoryDTO(categoryService.toOpenUrl(entity.getCategoryId().toString())));
 
+        // counts from the aggregate, only the latest likers are listed
         dto.setLikes(getLikesCountByVideoId(entity.getId()));
-        dto.setProfileLikes(getProfileLikesByVideoId(entity.getId()));
+        dto.setProfileLikes(getProfileLikesByVideoId(entity.getId(), 0, profileLikesSize));
 
         dto.setDuration(entity.getDuration());
-        dto.setPublishedDate(dto.getPublishedDate());
+        dto.setPublishedDate(entity.getPublishedDate());
         dto.setCreatedDate(entity.getCreatedDate());
         dto.setUpdatedDate(entity.getUpdatedDate());
         return dto;
     }
 
+    /**
+     * Stored count plus the views not flushed yet.
+     */
+    public Integer getViewCount(VideoEntity entity) {
+        long pending = videoViewCounterService.getPending(entity.getId());
+        if (entity.getViewCount() == null) {
+            return pending > 0 ? (int) pending : null;
+        }
+        return (int) (entity.getViewCount() + pending);
+    }
+
     public VideoLikeDTO getLikesCountByVideoId(UUID videoId) {
         LikeCountSimpleMapper mapper = videoLikeRepository.getLikeCountByVideoId(videoId);
         return new VideoLikeDTO(mapper.getLike_count(), mapper.getDislike_count());
     }
 
-    public List<VideoLikeDTO> getProfileLikesByVideoId(UUID videoId) {
-        List<ProfileLikesSimpleMapper> mapper = videoLikeRepository.getProfileLikesByVideoId(videoId);
+    public List<VideoLikeDTO> getProfileLikesByVideoId(UUID videoId, int page, int size) {
+        return toProfileLikes(videoLikeRepository.getProfileLikesByVideoId(videoId, PageRequest.of(page, size)));
+    }
 
+    private List<VideoLikeDTO> toProfileLikes(List<ProfileLikesSimpleMapper> mapper) {
         List<VideoLikeDTO> dtoList = new ArrayList<>();
 
         mapper.forEach(entity -> {
@@ -0,0 +1,507 @@
+package com.company.service;
+
+import com.company.dto.SuggestDTO;
+import com.company.entity.ChannelEntity;
+import com.company.entity.TagEntity;
+import com.company.entity.VideoEntity;
+import com.company.enums.ChannelStatus;
+import com.company.enums.SuggestType;
+import com.company.enums.VideoStatus;
+import com.company.mapper.SuggestSimpleMapper;
+import com.company.repository.ChannelRepository;
+import com.company.repository.TagRepository;
+import com.company.repository.VideoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Search-as-you-type suggestions over public video titles, tag names and active channel names.
+ * <p>
+ * Names are folded like search terms and put in a radix trie, once from the start and once from each
+ * following word, so "cat" also suggests "funny cat videos". Single child chains are merged into one edge,
+ * so the trie has at most two nodes per key. Nodes with more than video.suggest.top-k keys below them keep
+ * the best top-k entries, smaller subtrees are collected on lookup, so a lookup is a walk down the prefix
+ * and a copy or a short walk of at most top-k keys. Children are kept in sorted arrays instead of maps.
+ * <p>
+ * Memory is dominated by the keys: with the default top-k of 10 a key costs about 150 bytes (node, label,
+ * its share of the stored top lists) plus an entry per name, so each public video with four keys takes
+ * in the order of 1 KB. video.suggest.max-suffixes and max-depth bound the keys per name.
+ * <p>
+ * Publishing, renaming or hiding a video, tag or channel updates the trie in place. Weights (views of the
+ * video, views of all public videos of the channel) drift with every view, so the whole trie is rebuilt
+ * periodically off the lock and swapped in.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VideoSuggestService {
+
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    private final VideoRepository videoRepository;
+    private final ChannelRepository channelRepository;
+    private final TagRepository tagRepository;
+
+    @Value("${video.suggest.top-k:10}")
+    private int topK;
+
+    @Value("${video.suggest.max-depth:24}")
+    private int maxDepth;
+
+    @Value("${video.suggest.max-suffixes:3}")
+    private int maxSuffixes;
+
+    @Value("${video.suggest.tag-weight:0}")
+    private long tagWeight;
+
+    @Value("${video.suggest.load-batch:1000}")
+    private int loadBatch;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private SuggestIndex index = new SuggestIndex();
+
+    // changes made while a rebuild reads the database, replayed on the new index before the swap
+    private List<Consumer<SuggestIndex>> replayList;
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Thread thread = new Thread(this::rebuild, "video-suggest-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Scheduled(initialDelayString = "${video.suggest.rebuild-ms:600000}",
+            fixedDelayString = "${video.suggest.rebuild-ms:600000}")
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        lock.writeLock().lock();
+        replayList = new ArrayList<>();
+        lock.writeLock().unlock();
+
+        SuggestIndex built = new SuggestIndex();
+        try {
+            UUID lastId = MIN_ID;
+            while (true) {
+                List<SuggestSimpleMapper> page = videoRepository.findSuggestPage(VideoStatus.PUBLIC, lastId,
+                        PageRequest.of(0, loadBatch));
+                if (page.isEmpty()) {
+                    break;
+                }
+                page.forEach(video -> built.put(SuggestType.VIDEO, video.getId(), video.getName(), video.getWeight()));
+                lastId = page.get(page.size() - 1).getId();
+            }
+            channelRepository.findSuggestList(ChannelStatus.ACTIVE, VideoStatus.PUBLIC).forEach(channel ->
+                    built.put(SuggestType.CHANNEL, channel.getId(), channel.getName(), channel.getWeight()));
+            tagRepository.findAll().forEach(tag ->
+                    built.put(SuggestType.TAG, tag.getId(), tag.getName(), tagWeight));
+        } catch (RuntimeException e) {
+            log.warn("Cannot build suggest index {}", e.getMessage());
+            lock.writeLock().lock();
+            replayList = null;
+            lock.writeLock().unlock();
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            replayList.forEach(change -> change.accept(built));
+            replayList = null;
+            index = built;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Suggest index built {} entries in {} ms", built.entryMap.size(),
+                System.currentTimeMillis() - started);
+    }
+
+    public List<SuggestDTO> suggest(String query, int size) {
+        String prefix = normalize(query, maxDepth);
+        if (prefix.isEmpty() || size <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            return index.suggest(prefix, Math.min(size, topK));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void index(VideoEntity entity) {
+        if (VideoStatus.PUBLIC.equals(entity.getStatus()) && Boolean.TRUE.equals(entity.getVisible())) {
+            Integer viewCount = entity.getViewCount();
+            change(target -> target.put(SuggestType.VIDEO, entity.getId(), entity.getTitle(),
+                    target.weight(SuggestType.VIDEO, entity.getId(), viewCount == null ? 0 : viewCount)));
+        } else {
+            remove(SuggestType.VIDEO, entity.getId());
+        }
+    }
+
+    public void index(ChannelEntity entity) {
+        if (ChannelStatus.ACTIVE.equals(entity.getStatus())) {
+            change(target -> target.put(SuggestType.CHANNEL, entity.getId(), entity.getName(),
+                    target.weight(SuggestType.CHANNEL, entity.getId(), 0)));
+        } else {
+            remove(SuggestType.CHANNEL, entity.getId());
+        }
+    }
+
+    public void index(TagEntity entity) {
+        change(target -> target.put(SuggestType.TAG, entity.getId(), entity.getName(), tagWeight));
+    }
+
+    public void remove(SuggestType type, UUID id) {
+        change(target -> target.remove(type, id));
+    }
+
+    private void change(Consumer<SuggestIndex> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(index);
+            if (replayList != null) {
+                replayList.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Case folded, diacritics removed, every run of other characters turned into a single space.
+     */
+    private String normalize(String text, int limit) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+
+        StringBuilder builder = new StringBuilder();
+        boolean space = false;
+        for (int i = 0; i < normalized.length() && builder.length() < limit; i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return builder.length() > limit ? builder.substring(0, limit) : builder.toString();
+    }
+
+    private static class Entry {
+
+        private final SuggestType type;
+        private final UUID id;
+        private final String text;
+        private final long weight;
+        private final List<String> keyList;
+
+        Entry(SuggestType type, UUID id, String text, long weight, List<String> keyList) {
+            this.type = type;
+            this.id = id;
+            this.text = text;
+            this.weight = weight;
+            this.keyList = keyList;
+        }
+    }
+
+    private static final Comparator<Entry> ENTRY_ORDER = Comparator.<Entry>comparingLong(entry -> -entry.weight)
+            .thenComparingInt(entry -> entry.text.length())
+            .thenComparing(entry -> entry.text)
+            .thenComparing(entry -> entry.id);
+
+    /**
+     * Radix tree node: the edge from the parent carries a whole label, chains of single children without
+     * entries of their own are merged into one node. Every node but the root therefore ends a key or branches.
+     */
+    private static class Node {
+
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        private String label;
+        // first label character of each child, sorted
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        // entries whose key ends here, best first
+        private Entry[] terminals = NO_ENTRIES;
+        // keys ending in the subtree
+        private int count;
+        // best entries of the subtree, only kept while more than top-k keys end below; smaller subtrees
+        // are collected on lookup, which visits at most about 2 * top-k nodes
+        private Entry[] top;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+
+        void putChild(Node node) {
+            char c = node.label.charAt(0);
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                children[i] = node;
+                return;
+            }
+            i = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            newKeys[i] = c;
+            newChildren[i] = node;
+            System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i < 0) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            keys = newKeys.length == 0 ? NO_KEYS : newKeys;
+            children = newChildren.length == 0 ? NO_CHILDREN : newChildren;
+        }
+    }
+
+    /**
+     * Not thread safe, guarded by the service lock once published.
+     */
+    private class SuggestIndex {
+
+        private final Node root = new Node("");
+        private final Map<String, Entry> entryMap = new HashMap<>();
+
+        List<SuggestDTO> suggest(String prefix, int size) {
+            Node node = root;
+            int i = 0;
+            while (i < prefix.length()) {
+                node = node.child(prefix.charAt(i));
+                if (node == null) {
+                    return new ArrayList<>();
+                }
+                // the prefix may end inside the label, the whole subtree still matches
+                int length = Math.min(node.label.length(), prefix.length() - i);
+                if (!node.label.regionMatches(0, prefix, i, length)) {
+                    return new ArrayList<>();
+                }
+                i += length;
+            }
+            List<SuggestDTO> dtoList = new ArrayList<>();
+            Entry[] best = best(node);
+            for (int k = 0; k < best.length && k < size; k++) {
+                Entry entry = best[k];
+                dtoList.add(new SuggestDTO(entry.id.toString(), entry.text, entry.type));
+            }
+            return dtoList;
+        }
+
+        long weight(SuggestType type, UUID id, long defaultWeight) {
+            Entry entry = entryMap.get(type + ":" + id);
+            return entry == null ? defaultWeight : entry.weight;
+        }
+
+        void put(SuggestType type, UUID id, String text, long weight) {
+            remove(type, id);
+            if (text == null || text.isBlank()) {
+                return;
+            }
+            Entry entry = new Entry(type, id, text, weight, keys(text));
+            entryMap.put(type + ":" + id, entry);
+            entry.keyList.forEach(key -> insert(key, entry));
+        }
+
+        void remove(SuggestType type, UUID id) {
+            Entry entry = entryMap.remove(type + ":" + id);
+            if (entry != null) {
+                entry.keyList.forEach(key -> delete(key, entry));
+            }
+        }
+
+        /**
+         * The name from its start and from the start of each following word, up to max-suffixes of them,
+         * each cut to max-depth characters.
+         */
+        private List<String> keys(String text) {
+            String normalized = normalize(text, Integer.MAX_VALUE);
+            List<String> keyList = new ArrayList<>();
+            int from = 0;
+            while (from >= 0 && keyList.size() <= maxSuffixes && from < normalized.length()) {
+                String key = normalized.substring(from, Math.min(normalized.length(), from + maxDepth)).trim();
+                if (!key.isEmpty() && !keyList.contains(key)) {
+                    keyList.add(key);
+                }
+                from = normalized.indexOf(' ', from);
+                from = from < 0 ? -1 : from + 1;
+            }
+            return keyList;
+        }
+
+        private void insert(String key, Entry entry) {
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.child(key.charAt(i));
+                if (child == null) {
+                    child = new Node(key.substring(i));
+                    node.putChild(child);
+                    i = key.length();
+                } else {
+                    int common = commonLength(child.label, key, i);
+                    if (common < child.label.length()) {
+                        // the key leaves the label halfway, split the edge there
+                        Node middle = new Node(child.label.substring(0, common));
+                        child.label = child.label.substring(common);
+                        middle.putChild(child);
+                        middle.count = child.count;
+                        middle.top = child.top;
+                        node.putChild(middle);
+                        child = middle;
+                    }
+                    i += common;
+                }
+                path.add(child);
+                node = child;
+            }
+            node.terminals = append(node.terminals, entry);
+            path.forEach(n -> n.count++);
+            refresh(path);
+        }
+
+        private void delete(String key, Entry entry) {
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                node = node.child(key.charAt(i));
+                if (node == null || !key.startsWith(node.label, i)) {
+                    return;
+                }
+                path.add(node);
+                i += node.label.length();
+            }
+            Entry[] terminals = Arrays.stream(node.terminals).filter(e -> e != entry).toArray(Entry[]::new);
+            if (terminals.length == node.terminals.length) {
+                return;
+            }
+            node.terminals = terminals.length == 0 ? Node.NO_ENTRIES : terminals;
+            path.forEach(n -> n.count--);
+
+            // drop the node left without keys, then merge what became a plain chain
+            for (int k = path.size() - 1; k > 0; k--) {
+                Node current = path.get(k);
+                Node parent = path.get(k - 1);
+                if (current.count == 0) {
+                    parent.removeChild(current.label.charAt(0));
+                } else if (current.terminals.length == 0 && current.children.length == 1) {
+                    Node only = current.children[0];
+                    only.label = current.label + only.label;
+                    parent.putChild(only);
+                }
+            }
+            refresh(path);
+        }
+
+        /**
+         * Recomputes the best entries from the changed node up to the root. Nodes dropped or merged away
+         * on the way are recomputed as well, which is harmless.
+         */
+        private void refresh(List<Node> path) {
+            for (int k = path.size() - 1; k >= 0; k--) {
+                Node node = path.get(k);
+                if (node.count <= topK) {
+                    node.top = null;
+                    continue;
+                }
+                TreeSet<Entry> best = new TreeSet<>(ENTRY_ORDER);
+                addBest(best, node.terminals);
+                for (Node child : node.children) {
+                    addBest(best, best(child));
+                }
+                node.top = best.toArray(new Entry[0]);
+            }
+        }
+
+        private Entry[] best(Node node) {
+            if (node.top != null) {
+                return node.top;
+            }
+            TreeSet<Entry> best = new TreeSet<>(ENTRY_ORDER);
+            collect(node, best);
+            return best.toArray(new Entry[0]);
+        }
+
+        private void collect(Node node, TreeSet<Entry> best) {
+            best.addAll(Arrays.asList(node.terminals));
+            for (Node child : node.children) {
+                collect(child, best);
+            }
+        }
+
+        private void addBest(TreeSet<Entry> best, Entry[] entries) {
+            for (Entry entry : entries) {
+                if (best.size() < topK) {
+                    best.add(entry);
+                } else if (ENTRY_ORDER.compare(entry, best.last()) < 0) {
+                    // a duplicate of an entry already kept is not added, so nothing is dropped for it
+                    if (best.add(entry)) {
+                        best.pollLast();
+                    }
+                } else {
+                    // entries are ordered, the rest of this list cannot do better
+                    break;
+                }
+            }
+        }
+
+        private int commonLength(String label, String key, int from) {
+            int length = Math.min(label.length(), key.length() - from);
+            int i = 0;
+            while (i < length && label.charAt(i) == key.charAt(from + i)) {
+                i++;
+            }
+            return i;
+        }
+
+        private Entry[] append(Entry[] entries, Entry entry) {
+            Entry[] result = Arrays.copyOf(entries, entries.length + 1);
+            result[entries.length] = entry;
+            Arrays.sort(result, ENTRY_ORDER);
+            return result;
+        }
+    }
+}
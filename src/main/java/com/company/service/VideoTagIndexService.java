@@ -0,0 +1,229 @@
+package com.company.service;
+
+import com.company.entity.VideoEntity;
+import com.company.entity.VideoTagEntity;
+import com.company.enums.VideoStatus;
+import com.company.mapper.VideoPublishedSimpleMapper;
+import com.company.mapper.VideoTagSimpleMapper;
+import com.company.repository.VideoRepository;
+import com.company.repository.VideoTagRepository;
+import com.company.util.CompressedBitmap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tag to video posting lists as compressed bitmaps, so tag feeds are answered without joining video_tag.
+ * <p>
+ * Videos are numbered in the order they were published, the bitmaps hold these numbers and a feed
+ * walks the result from the highest number down, newest first. A separate bitmap holds the videos that
+ * are public right now; hidden videos keep their number and tags and are only dropped from it.
+ * Videos get a number when they are first published, their tags are read at that moment.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VideoTagIndexService {
+
+    private static final UUID MIN_ID = new UUID(0, 0);
+    private static final LocalDateTime MIN_DATE = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final VideoRepository videoRepository;
+    private final VideoTagRepository videoTagRepository;
+
+    @Value("${video.tag.load-batch:1000}")
+    private int loadBatch;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<UUID, Integer> ordinalMap = new HashMap<>();
+    private final List<UUID> videoIdList = new ArrayList<>();
+    private final CompressedBitmap publicBitmap = new CompressedBitmap();
+    private final Map<UUID, CompressedBitmap> tagMap = new HashMap<>();
+
+
+    /**
+     * Loaded before the application serves requests, so no change can race with the load.
+     */
+    @PostConstruct
+    public void load() {
+        long started = System.currentTimeMillis();
+        try {
+            // public videos without a published date count as the oldest
+            videoRepository.findUnpublishedDateIds(VideoStatus.PUBLIC).forEach(id -> publicBitmap.add(ordinal(id)));
+
+            LocalDateTime lastDate = MIN_DATE;
+            UUID lastId = MIN_ID;
+            while (true) {
+                List<VideoPublishedSimpleMapper> page = videoRepository.findPublishedPage(VideoStatus.PUBLIC,
+                        lastDate, lastId, PageRequest.of(0, loadBatch));
+                if (page.isEmpty()) {
+                    break;
+                }
+                page.forEach(video -> publicBitmap.add(ordinal(video.getId())));
+                lastDate = page.get(page.size() - 1).getPublishedDate();
+                lastId = page.get(page.size() - 1).getId();
+            }
+
+            lastId = MIN_ID;
+            int pairs = 0;
+            while (true) {
+                List<VideoTagSimpleMapper> page = videoTagRepository.findPage(lastId, PageRequest.of(0, loadBatch));
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (VideoTagSimpleMapper videoTag : page) {
+                    Integer ordinal = ordinalMap.get(videoTag.getVideoId());
+                    if (ordinal != null) {
+                        tagMap.computeIfAbsent(videoTag.getTagId(), id -> new CompressedBitmap()).add(ordinal);
+                        pairs++;
+                    }
+                }
+                lastId = page.get(page.size() - 1).getId();
+            }
+            log.info("Video tag index loaded {} videos {} tags {} pairs in {} ms", videoIdList.size(), tagMap.size(),
+                    pairs, System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.warn("Cannot load video tag index {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Follows the status and visibility of the video.
+     */
+    public void index(VideoEntity entity) {
+        if (!VideoStatus.PUBLIC.equals(entity.getStatus()) || !Boolean.TRUE.equals(entity.getVisible())) {
+            remove(entity.getId());
+            return;
+        }
+        List<VideoTagEntity> tagList = videoTagRepository.findAllByVideoId(entity.getId());
+
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinal(entity.getId());
+            publicBitmap.add(ordinal);
+            tagList.forEach(videoTag ->
+                    tagMap.computeIfAbsent(videoTag.getTagId(), id -> new CompressedBitmap()).add(ordinal));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID videoId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalMap.get(videoId);
+            if (ordinal != null) {
+                publicBitmap.remove(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Videos never published have no number yet, their tags are read when they are published.
+     */
+    public void addTag(UUID videoId, UUID tagId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalMap.get(videoId);
+            if (ordinal != null) {
+                tagMap.computeIfAbsent(tagId, id -> new CompressedBitmap()).add(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeTag(UUID videoId, UUID tagId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalMap.get(videoId);
+            CompressedBitmap bitmap = tagMap.get(tagId);
+            if (ordinal != null && bitmap != null) {
+                bitmap.remove(ordinal);
+                if (bitmap.cardinality() == 0) {
+                    tagMap.remove(tagId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeTag(UUID tagId) {
+        lock.writeLock().lock();
+        try {
+            tagMap.remove(tagId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Public videos having all (or any) of the tags, newest published first.
+     */
+    public PageImpl<UUID> find(Collection<UUID> tagIds, boolean all, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+
+        lock.readLock().lock();
+        try {
+            List<CompressedBitmap> bitmapList = new ArrayList<>();
+            for (UUID tagId : tagIds) {
+                CompressedBitmap bitmap = tagMap.get(tagId);
+                if (bitmap != null) {
+                    bitmapList.add(bitmap);
+                } else if (all) {
+                    return new PageImpl<>(new ArrayList<>(), pageable, 0);
+                }
+            }
+            if (bitmapList.isEmpty()) {
+                return new PageImpl<>(new ArrayList<>(), pageable, 0);
+            }
+
+            CompressedBitmap result;
+            if (all) {
+                // smallest first, every step can only shrink the result
+                bitmapList.sort(Comparator.comparingInt(CompressedBitmap::cardinality));
+                result = bitmapList.get(0).and(publicBitmap);
+                for (int i = 1; i < bitmapList.size() && result.cardinality() > 0; i++) {
+                    result = result.and(bitmapList.get(i));
+                }
+            } else {
+                CompressedBitmap union = bitmapList.get(0);
+                for (int i = 1; i < bitmapList.size(); i++) {
+                    union = union.or(bitmapList.get(i));
+                }
+                result = union.and(publicBitmap);
+            }
+
+            List<UUID> idList = new ArrayList<>();
+            for (int ordinal : result.descending((long) page * size, size)) {
+                idList.add(videoIdList.get(ordinal));
+            }
+            return new PageImpl<>(idList, pageable, result.cardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int ordinal(UUID videoId) {
+        Integer ordinal = ordinalMap.get(videoId);
+        if (ordinal == null) {
+            ordinal = videoIdList.size();
+            videoIdList.add(videoId);
+            ordinalMap.put(videoId, ordinal);
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,96 @@
+package com.company.service;
+
+import com.company.dto.VideoTagDTO;
+import com.company.entity.TagEntity;
+import com.company.entity.VideoEntity;
+import com.company.entity.VideoTagEntity;
+import com.company.exception.AppBadRequestException;
+import com.company.exception.AppForbiddenException;
+import com.company.repository.VideoTagRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VideoTagService {
+
+    private final VideoTagRepository videoTagRepository;
+    private final VideoTagIndexService videoTagIndexService;
+    private final VideoService videoService;
+    private final TagService tagService;
+
+
+    public VideoTagDTO create(VideoTagDTO dto, String profileId) {
+        VideoEntity videoEntity = getOwnVideo(dto.getVideoId(), profileId);
+
+        TagEntity tagEntity = tagService.get(dto.getTagId());
+
+        VideoTagEntity entity = new VideoTagEntity();
+        entity.setVideoId(videoEntity.getId());
+        entity.setTagId(tagEntity.getId());
+
+        try {
+            videoTagRepository.save(entity);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Unique {}", dto);
+            throw new AppBadRequestException("Unique Items!");
+        }
+        videoTagIndexService.addTag(videoEntity.getId(), tagEntity.getId());
+
+        entity.setTag(tagEntity);
+        return toDTO(entity);
+    }
+
+    public Boolean delete(String videoId, String tagId, String profileId) {
+        VideoEntity videoEntity = getOwnVideo(videoId, profileId);
+
+        TagEntity tagEntity = tagService.get(tagId);
+
+        VideoTagEntity entity = videoTagRepository.findByVideoIdAndTagId(videoEntity.getId(), tagEntity.getId())
+                .orElseThrow(() -> {
+                    log.warn("Not found videoId={} tagId={}", videoId, tagId);
+                    return new AppBadRequestException("Not found!");
+                });
+
+        videoTagRepository.delete(entity);
+        videoTagIndexService.removeTag(videoEntity.getId(), tagEntity.getId());
+        return true;
+    }
+
+    public List<VideoTagDTO> videoTagList(String videoId) {
+        VideoEntity videoEntity = videoService.getById(videoId);
+
+        List<VideoTagDTO> dtoList = new ArrayList<>();
+
+        videoTagRepository.findAllByVideoId(videoEntity.getId()).forEach(entity -> {
+            dtoList.add(toDTO(entity));
+        });
+        return dtoList;
+    }
+
+    private VideoEntity getOwnVideo(String videoId, String profileId) {
+        VideoEntity videoEntity = videoService.getById(videoId);
+
+        if (!videoEntity.getChannel().getProfileId().toString().equals(profileId)) {
+            log.warn("Not access {}", profileId);
+            throw new AppForbiddenException("Not access!");
+        }
+        return videoEntity;
+    }
+
+    public VideoTagDTO toDTO(VideoTagEntity entity) {
+        VideoTagDTO dto = new VideoTagDTO();
+        dto.setId(entity.getId().toString());
+        dto.setVideoId(entity.getVideoId().toString());
+        dto.setTagId(entity.getTagId().toString());
+        dto.setTag(tagService.toDTO(entity.getTag()));
+        dto.setCreatedDate(entity.getCreatedDate());
+        return dto;
+    }
+}
@@ -0,0 +1,347 @@
+package com.company.service;
+
+import com.company.entity.VideoEntity;
+import com.company.enums.VideoStatus;
+import com.company.enums.VideoType;
+import com.company.repository.VideoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trending videos per category and video type, ranked by views and likes with exponential time decay.
+ * <p>
+ * A score is kept as log(sum of weight * e^(lambda * hours since 1970)) instead of decaying every score as
+ * time passes. All scores decay at the same rate, so their order never changes by itself, only when an event
+ * raises one of them. That is what lets each (category, type) keep a bounded top-K: a video can only enter
+ * the top-K at the moment its own score goes up. The decayed value, e^(score - lambda * now), is only needed
+ * to drop videos that went quiet.
+ * <p>
+ * Events are summed in adders and applied once per video every video.trending.apply-ms. The state is
+ * checkpointed to a local file and read back at startup, so a restart does not start cold.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VideoTrendingService {
+
+    private static final int CHECKPOINT_VERSION = 1;
+    private static final double MILLIS_PER_HOUR = 3_600_000d;
+
+    private final VideoRepository videoRepository;
+
+    @Value("${video.trending.half-life-hours:24}")
+    private double halfLifeHours;
+
+    @Value("${video.trending.top-k:100}")
+    private int topK;
+
+    @Value("${video.trending.view-weight:1}")
+    private double viewWeight;
+
+    @Value("${video.trending.like-weight:5}")
+    private double likeWeight;
+
+    // decayed score below which a video is no longer trending
+    @Value("${video.trending.min-score:1}")
+    private double minScore;
+
+    @Value("${video.trending.checkpoint:trending.dat}")
+    private String checkpoint;
+
+    private final Map<UUID, DoubleAdder> pendingMap = new ConcurrentHashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Item> itemMap = new HashMap<>();
+    private final Map<String, TreeSet<Item>> topMap = new HashMap<>();
+
+    private double lambda;
+
+
+    @PostConstruct
+    public void init() {
+        lambda = Math.log(2) / halfLifeHours;
+
+        Path path = Paths.get(checkpoint);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != CHECKPOINT_VERSION || input.readDouble() != lambda) {
+                log.warn("Trending checkpoint of another version or half life ignored");
+                return;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID videoId = new UUID(input.readLong(), input.readLong());
+                UUID categoryId = new UUID(input.readLong(), input.readLong());
+                String typeName = input.readUTF();
+                VideoType type = typeName.isEmpty() ? null : VideoType.valueOf(typeName);
+                Item item = new Item(videoId, categoryId, type);
+                item.score = input.readDouble();
+                itemMap.put(videoId, item);
+                offer(item);
+            }
+            log.info("Trending checkpoint loaded {} videos", count);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Cannot load trending checkpoint {}", e.getMessage());
+            itemMap.clear();
+            topMap.clear();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        apply();
+        checkpoint();
+    }
+
+    public void addView(UUID videoId) {
+        pendingMap.computeIfAbsent(videoId, id -> new DoubleAdder()).add(viewWeight);
+    }
+
+    public void addLike(UUID videoId) {
+        pendingMap.computeIfAbsent(videoId, id -> new DoubleAdder()).add(likeWeight);
+    }
+
+    /**
+     * Takes back a like at its full weight, more than the decayed credit of an older like. A ranked video
+     * keeps its top-K slot until the next apply of a video that beats it.
+     */
+    public void removeLike(UUID videoId) {
+        pendingMap.computeIfAbsent(videoId, id -> new DoubleAdder()).add(-likeWeight);
+    }
+
+    @Scheduled(fixedDelayString = "${video.trending.apply-ms:1000}")
+    public synchronized void apply() {
+        Map<UUID, Double> weightMap = new HashMap<>();
+        for (Map.Entry<UUID, DoubleAdder> entry : pendingMap.entrySet()) {
+            double weight = entry.getValue().sumThenReset();
+            if (weight != 0) {
+                weightMap.put(entry.getKey(), weight);
+            } else {
+                pendingMap.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        if (weightMap.isEmpty()) {
+            return;
+        }
+
+        // category and type of videos seen for the first time, one query for all of them
+        List<UUID> unknownList = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            weightMap.forEach((id, weight) -> {
+                if (weight > 0 && !itemMap.containsKey(id)) {
+                    unknownList.add(id);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<UUID, Item> newItemMap = new HashMap<>();
+        if (!unknownList.isEmpty()) {
+            try {
+                for (VideoEntity entity : videoRepository.findAllById(unknownList)) {
+                    // late events of a hidden video do not bring it back
+                    if (!VideoStatus.PUBLIC.equals(entity.getStatus()) || !Boolean.TRUE.equals(entity.getVisible())) {
+                        continue;
+                    }
+                    newItemMap.put(entity.getId(), new Item(entity.getId(), entity.getCategoryId(), entity.getType()));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Cannot read trending videos {}", e.getMessage());
+            }
+        }
+
+        double now = System.currentTimeMillis() / MILLIS_PER_HOUR * lambda;
+        lock.writeLock().lock();
+        try {
+            weightMap.forEach((videoId, weight) -> {
+                Item item = itemMap.get(videoId);
+                if (item == null && weight < 0) {
+                    return;
+                }
+                if (item == null) {
+                    item = newItemMap.get(videoId);
+                    if (item == null) {
+                        return;
+                    }
+                    itemMap.put(videoId, item);
+                }
+                TreeSet<Item> top = topMap.computeIfAbsent(item.key(), key -> new TreeSet<>(ITEM_ORDER));
+                boolean ranked = top.remove(item);
+                item.score = weight > 0 ? logAdd(item.score, Math.log(weight) + now)
+                        : logSubtract(item.score, Math.log(-weight) + now);
+                if (ranked) {
+                    top.add(item);
+                } else {
+                    offer(item);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops a video made private or deleted, it gives up its top-K slot at once. The slot goes to the next
+     * video of the same category and type whose score goes up. Published again, the video starts from zero.
+     */
+    public void remove(UUID videoId) {
+        pendingMap.remove(videoId);
+        lock.writeLock().lock();
+        try {
+            Item item = itemMap.remove(videoId);
+            if (item != null) {
+                TreeSet<Item> top = topMap.get(item.key());
+                if (top != null && top.remove(item) && top.isEmpty()) {
+                    topMap.remove(item.key());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Best videos still trending, of one category or all of them, of one type or both.
+     */
+    public List<UUID> top(UUID categoryId, VideoType type, int size) {
+        double threshold = Math.log(minScore) + System.currentTimeMillis() / MILLIS_PER_HOUR * lambda;
+        List<Item> candidateList = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            topMap.forEach((key, top) -> {
+                Item first = top.isEmpty() ? null : top.first();
+                if (first != null && (categoryId == null || categoryId.equals(first.categoryId))
+                        && (type == null || type.equals(first.type))) {
+                    top.descendingSet().stream()
+                            .takeWhile(item -> item.score >= threshold)
+                            .limit(size)
+                            .forEach(candidateList::add);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        candidateList.sort(ITEM_ORDER.reversed());
+        return candidateList.stream().limit(size).map(item -> item.videoId).toList();
+    }
+
+    /**
+     * Writes the videos still worth keeping to a temp file and moves it over the checkpoint. Videos that
+     * went quiet and are not ranked anywhere are dropped from memory here as well.
+     */
+    @Scheduled(initialDelayString = "${video.trending.checkpoint-ms:60000}",
+            fixedDelayString = "${video.trending.checkpoint-ms:60000}")
+    public synchronized void checkpoint() {
+        double threshold = Math.log(minScore) + System.currentTimeMillis() / MILLIS_PER_HOUR * lambda;
+        List<Item> itemList = new ArrayList<>();
+
+        lock.writeLock().lock();
+        try {
+            Set<Item> rankedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            topMap.values().forEach(rankedSet::addAll);
+            itemMap.values().removeIf(item -> item.score < threshold && !rankedSet.contains(item));
+            itemList.addAll(itemMap.values());
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Path path = Paths.get(checkpoint);
+        Path temp = Paths.get(checkpoint + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            output.writeInt(CHECKPOINT_VERSION);
+            output.writeDouble(lambda);
+            output.writeInt(itemList.size());
+            for (Item item : itemList) {
+                output.writeLong(item.videoId.getMostSignificantBits());
+                output.writeLong(item.videoId.getLeastSignificantBits());
+                output.writeLong(item.categoryId.getMostSignificantBits());
+                output.writeLong(item.categoryId.getLeastSignificantBits());
+                output.writeUTF(item.type == null ? "" : item.type.name());
+                output.writeDouble(item.score);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write trending checkpoint {}", e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Cannot replace trending checkpoint {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the item to its top-K if it beats the lowest one there.
+     */
+    private void offer(Item item) {
+        TreeSet<Item> top = topMap.computeIfAbsent(item.key(), key -> new TreeSet<>(ITEM_ORDER));
+        if (top.size() < topK) {
+            top.add(item);
+        } else if (ITEM_ORDER.compare(item, top.first()) > 0) {
+            top.pollFirst();
+            top.add(item);
+        }
+    }
+
+    /**
+     * log(e^a + e^b) without leaving the log space.
+     */
+    private double logAdd(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) {
+            return b;
+        }
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+
+    /**
+     * log(e^a - e^b), minus infinity when nothing is left.
+     */
+    private double logSubtract(double a, double b) {
+        if (b >= a) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return a + Math.log1p(-Math.exp(b - a));
+    }
+
+    private static final Comparator<Item> ITEM_ORDER = Comparator.<Item>comparingDouble(item -> item.score)
+            .thenComparing(item -> item.videoId);
+
+    private static class Item {
+
+        private final UUID videoId;
+        private final UUID categoryId;
+        private final VideoType type;
+        private double score = Double.NEGATIVE_INFINITY;
+
+        Item(UUID videoId, UUID categoryId, VideoType type) {
+            this.videoId = videoId;
+            this.categoryId = categoryId;
+            this.type = type;
+        }
+
+        String key() {
+            return categoryId + ":" + type;
+        }
+    }
+}
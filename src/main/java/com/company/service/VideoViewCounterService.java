@@ -0,0 +1,316 @@
+package com.company.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind view counter. Views are added to per video LongAdders and flushed periodically as one batched
+ * update, so a popular video no longer takes a row lock per view.
+ * <p>
+ * With video.view.log.enabled every view is also appended to a local log. At flush time the log is rotated
+ * into a segment together with the snapshot of the counters, and the segment is deleted once the update is
+ * committed. The name of that segment is committed with the counts, so segments left behind by a crash are
+ * either known as applied or counted again into the pending views at startup, and applied exactly once.
+ */
+@Slf4j
+@Service
+public class VideoViewCounterService {
+
+    private static final String SEGMENT_PREFIX = "views-";
+    private static final String CURRENT_LOG = "views.log";
+    private static final String INSTANCE_FILE = "instance.id";
+    private static final String UPDATE_SQL = "update video set view_count = view_count + ? where id = ?";
+    private static final String MARKER_SQL = "insert into video_view_log (instance_id, segment) values (?, ?) " +
+            "on conflict (instance_id) do update set segment = excluded.segment";
+    private static final String MARKER_SELECT_SQL = "select segment from video_view_log where instance_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${video.view.log.enabled:false}")
+    private boolean logEnabled;
+
+    @Value("${video.view.log.folder:view-log}")
+    private String logFolder;
+
+    @Value("${video.view.known-max:100000}")
+    private int knownMax;
+
+    private final Map<UUID, LongAdder> pendingMap = new ConcurrentHashMap<>();
+    // drained by the running flush and not committed yet, still part of the pending views
+    private final Map<UUID, Long> inFlightMap = new ConcurrentHashMap<>();
+    private final Set<UUID> knownSet = ConcurrentHashMap.newKeySet();
+
+    // views hold the read lock while logging and counting, the flush takes the write lock to rotate, snapshot
+    // and drop idle adders
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel logChannel;
+    private long segmentSequence;
+    private UUID instanceId;
+    // last segment found at startup while the segments up to it are not counted yet, they are kept till then
+    private String replayUpTo;
+
+
+    public VideoViewCounterService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!logEnabled) {
+            return;
+        }
+        Path folder = Paths.get(logFolder);
+        Files.createDirectories(folder);
+        instanceId = readInstanceId(folder.resolve(INSTANCE_FILE));
+
+        // a crash may leave the current log next to older segments, all of them are pending
+        Path current = folder.resolve(CURRENT_LOG);
+        if (Files.exists(current)) {
+            Files.move(current, nextSegment());
+        }
+        List<Path> segmentList = listSegments();
+        if (!segmentList.isEmpty()) {
+            replayUpTo = segmentList.get(segmentList.size() - 1).getFileName().toString();
+            replay();
+        }
+
+        logChannel = FileChannel.open(current, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+        if (logChannel != null) {
+            try {
+                logChannel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close view log");
+            }
+        }
+    }
+
+    /**
+     * Public videos whose id was checked since the last flush, so repeated views skip the lookup.
+     */
+    public boolean isKnown(UUID videoId) {
+        return knownSet.contains(videoId);
+    }
+
+    public void markKnown(UUID videoId) {
+        if (knownSet.size() < knownMax) {
+            knownSet.add(videoId);
+        }
+    }
+
+    /**
+     * Always under the read lock, also without the log: the flush drops idle adders under the write lock,
+     * so a view can never land in an adder that was already removed.
+     */
+    public void increment(UUID videoId) {
+        lock.readLock().lock();
+        try {
+            if (!logEnabled) {
+                pendingMap.computeIfAbsent(videoId, id -> new LongAdder()).increment();
+                return;
+            }
+            ByteBuffer line = ByteBuffer.wrap((videoId + "\n").getBytes(StandardCharsets.US_ASCII));
+            while (line.hasRemaining()) {
+                logChannel.write(line);
+            }
+            pendingMap.computeIfAbsent(videoId, id -> new LongAdder()).increment();
+        } catch (IOException e) {
+            log.warn("Cannot log view {}", videoId);
+            pendingMap.computeIfAbsent(videoId, id -> new LongAdder()).increment();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Views counted but not flushed yet, added to the stored count on reads.
+     */
+    public long getPending(UUID videoId) {
+        LongAdder adder = pendingMap.get(videoId);
+        return (adder == null ? 0 : adder.sum()) + inFlightMap.getOrDefault(videoId, 0L);
+    }
+
+    @Scheduled(fixedDelayString = "${video.view.flush-ms:5000}")
+    public synchronized void flush() {
+        knownSet.clear();
+        if (replayUpTo != null) {
+            replay();
+        }
+
+        Map<UUID, Long> deltaMap = new TreeMap<>();
+        Path segment = null;
+
+        lock.writeLock().lock();
+        try {
+            if (logEnabled && logChannel != null) {
+                segment = rotate();
+            }
+            for (Map.Entry<UUID, LongAdder> entry : pendingMap.entrySet()) {
+                long delta = entry.getValue().sumThenReset();
+                if (delta > 0) {
+                    deltaMap.put(entry.getKey(), delta);
+                    inFlightMap.put(entry.getKey(), delta);
+                } else {
+                    // idle videos are dropped, no view can race with this under the write lock
+                    pendingMap.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot rotate view log {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (deltaMap.isEmpty()) {
+            deleteSegments(segment);
+            return;
+        }
+        try {
+            update(deltaMap, segment);
+            inFlightMap.clear();
+            deleteSegments(segment);
+        } catch (RuntimeException e) {
+            // keep the segments, the deltas are tried again with the next flush
+            log.warn("Cannot flush view counts {}", e.getMessage());
+            deltaMap.forEach((id, delta) -> pendingMap.computeIfAbsent(id, k -> new LongAdder()).add(delta));
+            inFlightMap.clear();
+        }
+    }
+
+    private void update(Map<UUID, Long> deltaMap, Path segment) {
+        List<Object[]> argList = new ArrayList<>(deltaMap.size());
+        // ordered by id, so concurrent flushes of several instances lock rows in the same order
+        deltaMap.forEach((id, delta) -> argList.add(new Object[]{delta, id}));
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, argList);
+            if (segment != null) {
+                jdbcTemplate.update(MARKER_SQL, instanceId, segment.getFileName().toString());
+            }
+        });
+    }
+
+    private Path rotate() throws IOException {
+        Path current = Paths.get(logFolder, CURRENT_LOG);
+        logChannel.close();
+        Path segment = nextSegment();
+        Files.move(current, segment);
+        logChannel = FileChannel.open(current, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        return segment;
+    }
+
+    private Path nextSegment() {
+        // fixed width, so names sort in write order
+        return Paths.get(logFolder, String.format("%s%013d-%06d.log", SEGMENT_PREFIX, System.currentTimeMillis(),
+                segmentSequence++ % 1_000_000));
+    }
+
+    /**
+     * Deletes every segment up to the given one; older segments belong to failed flushes whose deltas were
+     * merged into this one. Segments of the startup replay are kept while they are not counted.
+     */
+    private void deleteSegments(Path last) {
+        if (last == null) {
+            return;
+        }
+        for (Path segment : listSegments()) {
+            String name = segment.getFileName().toString();
+            if (name.compareTo(last.getFileName().toString()) <= 0
+                    && (replayUpTo == null || name.compareTo(replayUpTo) > 0)) {
+                try {
+                    Files.deleteIfExists(segment);
+                } catch (IOException e) {
+                    log.warn("Cannot delete view log {}", segment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the segments found at startup into the pending views, the next flush commits them together with
+     * its own marker and deletes them. Segments up to the committed marker were applied before the crash and
+     * are not counted again. Without the database or the files the segments are left for the next flush.
+     */
+    private void replay() {
+        String applied;
+        try {
+            applied = jdbcTemplate.query(MARKER_SELECT_SQL, rs -> rs.next() ? rs.getString(1) : "", instanceId);
+        } catch (RuntimeException e) {
+            log.warn("Cannot replay view log {}", e.getMessage());
+            return;
+        }
+        Map<UUID, Long> deltaMap = new HashMap<>();
+        try {
+            for (Path segment : listSegments()) {
+                String name = segment.getFileName().toString();
+                if (name.compareTo(replayUpTo) > 0 || name.compareTo(applied) <= 0) {
+                    continue;
+                }
+                for (String line : Files.readAllLines(segment, StandardCharsets.US_ASCII)) {
+                    try {
+                        deltaMap.merge(UUID.fromString(line.trim()), 1L, Long::sum);
+                    } catch (IllegalArgumentException e) {
+                        // torn last line
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot replay view log {}", e.getMessage());
+            return;
+        }
+        deltaMap.forEach((id, delta) -> pendingMap.computeIfAbsent(id, k -> new LongAdder()).add(delta));
+        replayUpTo = null;
+        log.info("View log replayed {} videos", deltaMap.size());
+    }
+
+    /**
+     * Random id of the log folder, kept in the folder, so the marker row belongs to these segments only.
+     */
+    private UUID readInstanceId(Path path) throws IOException {
+        if (Files.exists(path)) {
+            return UUID.fromString(Files.readString(path, StandardCharsets.US_ASCII).trim());
+        }
+        UUID id = UUID.randomUUID();
+        Files.writeString(path, id.toString(), StandardCharsets.US_ASCII);
+        return id;
+    }
+
+    private List<Path> listSegments() {
+        List<Path> segmentList = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(logFolder), SEGMENT_PREFIX + "*.log")) {
+            stream.forEach(segmentList::add);
+        } catch (IOException e) {
+            log.warn("Cannot list view log {}", e.getMessage());
+        }
+        segmentList.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        return segmentList;
+    }
+}
@@ -0,0 +1,165 @@
+package com.company.service;
+
+import com.company.entity.VideoViewerSketchEntity;
+import com.company.repository.VideoViewerSketchRepository;
+import com.company.util.HyperLogLogUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Distinct viewers per video, approximated with HyperLogLog sketches per day and for all time.
+ * Viewers are added to in-memory sketches that are merged into video_viewer_sketch periodically;
+ * the merge is a register wise maximum, so any number of nodes can flush into the same rows.
+ */
+@Slf4j
+@Service
+public class VideoViewerService {
+
+    private static final String TOTAL = "total";
+
+    private final VideoViewerSketchRepository videoViewerSketchRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<SketchKey, byte[]> pendingMap = new ConcurrentHashMap<>();
+
+
+    public VideoViewerService(VideoViewerSketchRepository videoViewerSketchRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.videoViewerSketchRepository = videoViewerSketchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @param viewer profile id, or a fingerprint of anonymous clients
+     */
+    public void add(UUID videoId, String viewer) {
+        SketchKey key = new SketchKey(videoId, LocalDate.now().toString());
+        pendingMap.compute(key, (k, registers) -> {
+            if (registers == null) {
+                registers = HyperLogLogUtil.create();
+            }
+            HyperLogLogUtil.add(registers, viewer);
+            return registers;
+        });
+    }
+
+    /**
+     * All time estimate, including viewers not flushed yet.
+     */
+    public long getUniqueViewers(UUID videoId) {
+        byte[] registers = videoViewerSketchRepository.findByVideoIdAndPeriod(videoId, TOTAL)
+                .map(VideoViewerSketchEntity::getRegisters)
+                .orElseGet(HyperLogLogUtil::create);
+        // pending sketches are at most a flush interval old: today's, and yesterday's right after midnight
+        LocalDate today = LocalDate.now();
+        for (LocalDate day : List.of(today, today.minusDays(1))) {
+            byte[] pending = pendingMap.get(new SketchKey(videoId, day.toString()));
+            if (pending != null) {
+                HyperLogLogUtil.merge(registers, pending);
+            }
+        }
+        return HyperLogLogUtil.estimate(registers);
+    }
+
+    /**
+     * Estimate over the given days, both inclusive.
+     */
+    public long getUniqueViewers(UUID videoId, LocalDate from, LocalDate to) {
+        byte[] registers = HyperLogLogUtil.create();
+        videoViewerSketchRepository.findAllByVideoIdAndPeriodBetween(videoId, from.toString(), to.toString())
+                .forEach(entity -> HyperLogLogUtil.merge(registers, entity.getRegisters()));
+        return HyperLogLogUtil.estimate(registers);
+    }
+
+    @Scheduled(fixedDelayString = "${video.viewer.flush-ms:60000}")
+    public synchronized void flush() {
+        List<SketchKey> keyList = new ArrayList<>(pendingMap.keySet());
+        for (SketchKey key : keyList) {
+            byte[] registers = pendingMap.remove(key);
+            if (registers == null) {
+                continue;
+            }
+            try {
+                merge(key.videoId, key.period, registers);
+                merge(key.videoId, TOTAL, registers);
+            } catch (RuntimeException e) {
+                log.warn("Cannot flush viewer sketch {} {}", key.videoId, e.getMessage());
+                // merging again later is harmless, the maximum is idempotent
+                pendingMap.merge(key, registers, (current, failed) -> {
+                    HyperLogLogUtil.merge(current, failed);
+                    return current;
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    private void merge(UUID videoId, String period, byte[] registers) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> doMerge(videoId, period, registers));
+        } catch (DataIntegrityViolationException e) {
+            // the row was inserted concurrently by another node, it exists now
+            transactionTemplate.executeWithoutResult(status -> doMerge(videoId, period, registers));
+        }
+    }
+
+    private void doMerge(UUID videoId, String period, byte[] registers) {
+        VideoViewerSketchEntity entity = videoViewerSketchRepository.findForUpdateByVideoIdAndPeriod(videoId, period)
+                .orElseGet(() -> {
+                    VideoViewerSketchEntity created = new VideoViewerSketchEntity();
+                    created.setVideoId(videoId);
+                    created.setPeriod(period);
+                    created.setRegisters(HyperLogLogUtil.create());
+                    return created;
+                });
+        byte[] merged = entity.getRegisters().clone();
+        HyperLogLogUtil.merge(merged, registers);
+        entity.setRegisters(merged);
+        videoViewerSketchRepository.saveAndFlush(entity);
+    }
+
+    private static class SketchKey {
+
+        private final UUID videoId;
+        private final String period;
+
+        SketchKey(UUID videoId, String period) {
+            this.videoId = videoId;
+            this.period = period;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SketchKey)) {
+                return false;
+            }
+            SketchKey other = (SketchKey) o;
+            return videoId.equals(other.videoId) && period.equals(other.period);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(videoId, period);
+        }
+    }
+}
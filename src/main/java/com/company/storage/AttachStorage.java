@@ -0,0 +1,49 @@
+package com.company.storage;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpRange;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Where attach files live, addressed by storage key. The backend is chosen with attach.storage.type
+ * (local, memory or s3). Temp files of uploads always stay under attach.upload.folder and are handed over with put.
+ */
+public interface AttachStorage {
+
+    /**
+     * Stores the file under the key. The source is moved when the backend allows it and must not be used afterwards.
+     * The content becomes visible under the key only once it is complete.
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * Streaming view of the stored content; not readable when the key is unknown.
+     */
+    Resource get(String key);
+
+    boolean exists(String key) throws IOException;
+
+    /**
+     * Copies the content to another key, the source stays in place. Same visibility rule as put.
+     */
+    void copy(String sourceKey, String targetKey) throws IOException;
+
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Opens only the requested range, for backends where get() would reach it by reading every byte before it.
+     * Null when get() serves ranges cheaply, or when the backend cannot answer this range with 206.
+     */
+    default PartialContent getRange(String key, HttpRange range) throws IOException {
+        return null;
+    }
+
+    /**
+     * Local file behind the key, null when the backend does not keep files on the local filesystem.
+     */
+    default Path getPath(String key) {
+        return null;
+    }
+}
@@ -0,0 +1,138 @@
+package com.company.storage;
+
+import com.company.exception.AppBadRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Files on local disks. With several attach.storage.local.roots (e.g. one per mount point) keys are striped
+ * across them by hash, so capacity and IOPS grow with the number of disks.
+ * The hash is taken over the file name up to its first dot, so renditions land on the disk of their original.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "attach.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalAttachStorage implements AttachStorage {
+
+    @Value("${attach.upload.folder}")
+    private String attachFolder;
+
+    /**
+     * defaults to attach.upload.folder
+     */
+    @Value("${attach.storage.local.roots:}")
+    private String[] rootNames;
+
+    private final List<Path> rootList = new ArrayList<>();
+
+
+    @PostConstruct
+    public void init() {
+        for (String rootName : rootNames) {
+            if (!rootName.isBlank()) {
+                rootList.add(Paths.get(rootName.trim()).toAbsolutePath().normalize());
+            }
+        }
+        if (rootList.isEmpty()) {
+            rootList.add(Paths.get(attachFolder).toAbsolutePath().normalize());
+        }
+        log.info("Attach storage roots {}", rootList);
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = resolve(getRoot(key), key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // another disk: copy next to the target first, so a half copied file is never visible under the key
+            Path temp = Files.createTempFile(target.getParent(), "put-", ".part");
+            try {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(source);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        Path target = resolve(getRoot(targetKey), targetKey);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "copy-", ".part");
+        try {
+            Files.copy(getPath(sourceKey), temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public Resource get(String key) {
+        return new FileSystemResource(getPath(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(getPath(key));
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(getPath(key));
+    }
+
+    /**
+     * Files written before a root was added stay where they are, so the other roots are checked
+     * when the key is not found on its own one.
+     */
+    @Override
+    public Path getPath(String key) {
+        Path root = getRoot(key);
+        Path file = resolve(root, key);
+        if (rootList.size() > 1 && !Files.exists(file)) {
+            for (Path other : rootList) {
+                Path candidate = resolve(other, key);
+                if (other != root && Files.exists(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return file;
+    }
+
+    private Path getRoot(String key) {
+        if (rootList.size() == 1) {
+            return rootList.get(0);
+        }
+        String name = key.substring(key.lastIndexOf('/') + 1);
+        int dot = name.indexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        return rootList.get(Math.floorMod(name.hashCode(), rootList.size()));
+    }
+
+    private Path resolve(Path root, String key) {
+        Path file = root.resolve(key).normalize();
+        if (!file.startsWith(root)) {
+            log.warn("Invalid path {}", key);
+            throw new AppBadRequestException("Invalid path!");
+        }
+        return file;
+    }
+}
@@ -0,0 +1,84 @@
+package com.company.storage;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps files on the heap, for tests and local runs without a writable upload folder.
+ */
+@Component
+@ConditionalOnProperty(name = "attach.storage.type", havingValue = "memory")
+public class MemoryAttachStorage implements AttachStorage {
+
+    private final Map<String, byte[]> contentMap = new ConcurrentHashMap<>();
+
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        contentMap.put(key, Files.readAllBytes(source));
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        byte[] content = contentMap.get(sourceKey);
+        if (content == null) {
+            throw new FileNotFoundException(sourceKey);
+        }
+        contentMap.put(targetKey, content);
+    }
+
+    @Override
+    public Resource get(String key) {
+        return new AbstractResource() {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                byte[] content = contentMap.get(key);
+                if (content == null) {
+                    throw new FileNotFoundException(key);
+                }
+                return new ByteArrayInputStream(content);
+            }
+
+            @Override
+            public boolean exists() {
+                return contentMap.containsKey(key);
+            }
+
+            @Override
+            public long contentLength() throws IOException {
+                byte[] content = contentMap.get(key);
+                if (content == null) {
+                    throw new FileNotFoundException(key);
+                }
+                return content.length;
+            }
+
+            @Override
+            public String getDescription() {
+                return "Memory attach [" + key + "]";
+            }
+        };
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return contentMap.containsKey(key);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        return contentMap.remove(key) != null;
+    }
+}
@@ -0,0 +1,24 @@
+package com.company.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.InputStream;
+
+/**
+ * One byte range of a stored object, opened by the backend itself.
+ */
+@Getter
+@AllArgsConstructor
+public class PartialContent {
+
+    private final InputStream body;
+
+    /**
+     * first and last byte, inclusive
+     */
+    private final long start;
+    private final long end;
+
+    private final long totalLength;
+}
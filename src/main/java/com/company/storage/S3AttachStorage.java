@@ -0,0 +1,308 @@
+package com.company.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.apache.commons.codec.digest.HmacUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Objects in an S3 compatible bucket (AWS S3, MinIO, ...), addressed path style as {endpoint}/{bucket}/{key}.
+ * Requests are signed with AWS Signature V4; uploads stream the temp file with an unsigned payload
+ * and downloads stream the response body, so no object is held in memory.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "attach.storage.type", havingValue = "s3")
+public class S3AttachStorage implements AttachStorage {
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String SERVICE = "s3";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String EMPTY_PAYLOAD = DigestUtils.sha256Hex("");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    @Value("${attach.storage.s3.endpoint:http://localhost:9000}")
+    private String endpoint;
+
+    @Value("${attach.storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${attach.storage.s3.bucket:attach}")
+    private String bucket;
+
+    @Value("${attach.storage.s3.access-key:}")
+    private String accessKey;
+
+    @Value("${attach.storage.s3.secret-key:}")
+    private String secretKey;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        HttpResponse<Void> response = send(request("PUT", key, UNSIGNED_PAYLOAD)
+                .PUT(HttpRequest.BodyPublishers.ofFile(source)), HttpResponse.BodyHandlers.discarding());
+        check(response, "PUT", key);
+        Files.deleteIfExists(source);
+    }
+
+    /**
+     * Server side copy, the bytes do not pass through this application.
+     */
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        HttpResponse<Void> response = send(request("PUT", targetKey, EMPTY_PAYLOAD,
+                        "/" + encode(bucket) + "/" + encodePath(sourceKey))
+                .PUT(HttpRequest.BodyPublishers.noBody()), HttpResponse.BodyHandlers.discarding());
+        check(response, "COPY", targetKey);
+    }
+
+    @Override
+    public Resource get(String key) {
+        return new S3Resource(key);
+    }
+
+    /**
+     * Ranged GET, S3 sends only the requested bytes.
+     */
+    @Override
+    public PartialContent getRange(String key, HttpRange range) throws IOException {
+        HttpResponse<InputStream> response = send(request("GET", key, EMPTY_PAYLOAD)
+                .header(HttpHeaders.RANGE, "bytes=" + range).GET(), HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 404) {
+            response.body().close();
+            throw new FileNotFoundException(key);
+        }
+        // 416 or a server ignoring Range: left to the generic path
+        String contentRange = response.headers().firstValue(HttpHeaders.CONTENT_RANGE).orElse(null);
+        if (response.statusCode() != 206 || contentRange == null) {
+            response.body().close();
+            if (response.statusCode() / 100 != 2 && response.statusCode() != 416) {
+                check(response, "GET", key);
+            }
+            return null;
+        }
+        try {
+            // bytes {start}-{end}/{total}
+            String[] parts = contentRange.substring(contentRange.indexOf(' ') + 1).split("[-/]");
+            return new PartialContent(response.body(), Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                    Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            response.body().close();
+            log.warn("S3 GET {} invalid Content-Range {}", key, contentRange);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return head(key) != null;
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        boolean existed = exists(key);
+        HttpResponse<Void> response = send(request("DELETE", key, EMPTY_PAYLOAD).DELETE(),
+                HttpResponse.BodyHandlers.discarding());
+        check(response, "DELETE", key);
+        return existed;
+    }
+
+    /**
+     * @return the object response headers, null when there is no such key
+     */
+    private HttpResponse<Void> head(String key) throws IOException {
+        HttpResponse<Void> response = send(request("HEAD", key, EMPTY_PAYLOAD)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody()), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        check(response, "HEAD", key);
+        return response;
+    }
+
+    private InputStream open(String key) throws IOException {
+        HttpResponse<InputStream> response = send(request("GET", key, EMPTY_PAYLOAD).GET(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() / 100 != 2) {
+            response.body().close();
+        }
+        if (response.statusCode() == 404) {
+            throw new FileNotFoundException(key);
+        }
+        check(response, "GET", key);
+        return response.body();
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return httpClient.send(builder.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private void check(HttpResponse<?> response, String method, String key) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            log.warn("S3 {} {} failed {}", method, key, response.statusCode());
+            throw new IOException("S3 " + method + " failed with " + response.statusCode());
+        }
+    }
+
+    private HttpRequest.Builder request(String method, String key, String payloadHash) {
+        return request(method, key, payloadHash, null);
+    }
+
+    /**
+     * Builds a request signed with Signature V4 over the host, x-amz-content-sha256 and x-amz-date headers,
+     * plus x-amz-copy-source when copySource is set.
+     */
+    private HttpRequest.Builder request(String method, String key, String payloadHash, String copySource) {
+        String canonicalUri = "/" + encode(bucket) + "/" + encodePath(key);
+        URI uri = URI.create(endpoint.replaceAll("/+$", "") + canonicalUri);
+
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = DATE_TIME_FORMAT.format(now);
+        String date = amzDate.substring(0, 8);
+        String host = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+
+        String signedHeaders = copySource == null
+                ? "host;x-amz-content-sha256;x-amz-date"
+                : "host;x-amz-content-sha256;x-amz-copy-source;x-amz-date";
+        String canonicalRequest = method + "\n" + canonicalUri + "\n\n"
+                + "host:" + host + "\n"
+                + "x-amz-content-sha256:" + payloadHash + "\n"
+                + (copySource == null ? "" : "x-amz-copy-source:" + copySource + "\n")
+                + "x-amz-date:" + amzDate + "\n\n"
+                + signedHeaders + "\n" + payloadHash;
+
+        String scope = date + "/" + region + "/" + SERVICE + "/aws4_request";
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n" + DigestUtils.sha256Hex(canonicalRequest);
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, SERVICE);
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = Hex.encodeHexString(hmac(signingKey, stringToSign));
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+        if (copySource != null) {
+            builder.header("x-amz-copy-source", copySource);
+        }
+        return builder
+                .timeout(Duration.ofMinutes(10))
+                .header("x-amz-content-sha256", payloadHash)
+                .header("x-amz-date", amzDate)
+                .header("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope
+                        + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+    }
+
+    private byte[] hmac(byte[] key, String data) {
+        return new HmacUtils(HmacAlgorithms.HMAC_SHA_256, key).hmac(data);
+    }
+
+    private String encodePath(String key) {
+        StringBuilder builder = new StringBuilder();
+        for (String segment : key.split("/", -1)) {
+            if (builder.length() > 0) {
+                builder.append('/');
+            }
+            builder.append(encode(segment));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * RFC 3986 encoding as required by Signature V4, only unreserved characters are kept.
+     */
+    private String encode(String value) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~') {
+                builder.append(c);
+            } else {
+                builder.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return builder.toString();
+    }
+
+    private class S3Resource extends AbstractResource {
+
+        private final String key;
+
+        // one HEAD answers exists, isReadable and contentLength for the whole response
+        private HttpResponse<Void> head;
+        private boolean headRead;
+
+        S3Resource(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return open(key);
+        }
+
+        @Override
+        public boolean exists() {
+            try {
+                return getHead() != null;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            HttpResponse<Void> response = getHead();
+            if (response == null) {
+                throw new FileNotFoundException(key);
+            }
+            return response.headers().firstValueAsLong("Content-Length").orElseThrow(() ->
+                    new IOException("No Content-Length for " + key));
+        }
+
+        private HttpResponse<Void> getHead() throws IOException {
+            if (!headRead) {
+                head = head(key);
+                headRead = true;
+            }
+            return head;
+        }
+
+        @Override
+        public String getDescription() {
+            return "S3 attach [" + bucket + "/" + key + "]";
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.company.util;
+
+import com.company.exception.AppBadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque feed cursors: the sort date and id of the last row of a page, url safe base64 encoded.
+ */
+@Slf4j
+public class CursorUtil {
+
+    public static String encode(LocalDateTime date, UUID id) {
+        String value = date + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf('|');
+            return new Cursor(LocalDateTime.parse(value.substring(0, separator)),
+                    UUID.fromString(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            log.warn("Cursor not valid {}", cursor);
+            throw new AppBadRequestException("Cursor not valid!");
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Cursor {
+        private final LocalDateTime date;
+        private final UUID id;
+    }
+}
@@ -0,0 +1,208 @@
+package com.company.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Moves the moov box of an MP4/MOV in front of the media data, so playback can start after the first few KB.
+ * Only moov is held in memory; stco/co64 chunk offsets are rewritten and everything else is copied as is.
+ */
+@Slf4j
+public class FaststartUtil {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BOXES = 10_000;
+
+
+    /**
+     * Writes the faststart version of source into target.
+     *
+     * @return SHA-256 of target, or null when the file needs no rewrite or cannot be rewritten
+     */
+    public static String faststart(Path source, Path target, long maxMoovBytes) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long fileSize = in.size();
+
+            long mdatOffset = -1;
+            long moovOffset = -1;
+            long moovSize = 0;
+
+            long position = 0;
+            int count = 0;
+            while (position + 8 <= fileSize && count++ < MAX_BOXES) {
+                ByteBuffer header = read(in, position, 16);
+                long size = header.getInt() & 0xFFFFFFFFL;
+                String type = fourcc(header);
+                if (size == 1) {
+                    size = header.getLong();
+                } else if (size == 0) {
+                    size = fileSize - position;
+                }
+                if (size < 8 || position + size > fileSize) {
+                    return null;
+                }
+                if (type.equals("mdat") && mdatOffset < 0) {
+                    mdatOffset = position;
+                } else if (type.equals("moov")) {
+                    moovOffset = position;
+                    moovSize = size;
+                    break;
+                }
+                position += size;
+            }
+
+            if (moovOffset < 0 || mdatOffset < 0 || moovOffset < mdatOffset) {
+                return null;
+            }
+            if (moovSize > maxMoovBytes) {
+                log.warn("Moov too large for faststart {}", moovSize);
+                return null;
+            }
+
+            ByteBuffer moov = read(in, moovOffset, (int) moovSize);
+            if (!patchOffsets(moov, 0, (int) moovSize, mdatOffset, moovOffset, moovSize)) {
+                log.warn("Chunk offsets overflow or broken, faststart skipped");
+                return null;
+            }
+            moov.rewind();
+
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                copy(in, 0, mdatOffset, out, digest);
+                digest.update(moov.duplicate());
+                while (moov.hasRemaining()) {
+                    out.write(moov);
+                }
+                copy(in, mdatOffset, moovOffset - mdatOffset, out, digest);
+                copy(in, moovOffset + moovSize, fileSize - moovOffset - moovSize, out, digest);
+            }
+            return Hex.encodeHexString(digest.digest());
+        }
+    }
+
+    /**
+     * Shifts every chunk offset that points between the insert position and the old moov position.
+     *
+     * @return false when a 32 bit stco offset would overflow or an offset table does not fit its box
+     */
+    private static boolean patchOffsets(ByteBuffer moov, int start, int end, long insertOffset,
+                                        long moovOffset, long moovSize) {
+        int position = start;
+        while (position + 8 <= end) {
+            long size = moov.getInt(position) & 0xFFFFFFFFL;
+            String type = new String(new byte[]{moov.get(position + 4), moov.get(position + 5),
+                    moov.get(position + 6), moov.get(position + 7)}, StandardCharsets.ISO_8859_1);
+            int headerSize = 8;
+            if (size == 1) {
+                size = moov.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                return true;
+            }
+            int body = position + headerSize;
+
+            switch (type) {
+                case "moov", "trak", "mdia", "minf", "stbl" -> {
+                    if (!patchOffsets(moov, body, (int) (position + size), insertOffset, moovOffset, moovSize)) {
+                        return false;
+                    }
+                }
+                case "stco" -> {
+                    long entries = readEntries(moov, body, position + size, 4);
+                    if (entries < 0) {
+                        return false;
+                    }
+                    for (int i = 0; i < entries; i++) {
+                        int index = body + 8 + i * 4;
+                        long offset = moov.getInt(index) & 0xFFFFFFFFL;
+                        if (offset >= insertOffset && offset < moovOffset) {
+                            offset += moovSize;
+                            if (offset > 0xFFFFFFFFL) {
+                                return false;
+                            }
+                            moov.putInt(index, (int) offset);
+                        }
+                    }
+                }
+                case "co64" -> {
+                    long entries = readEntries(moov, body, position + size, 8);
+                    if (entries < 0) {
+                        return false;
+                    }
+                    for (int i = 0; i < entries; i++) {
+                        int index = body + 8 + i * 8;
+                        long offset = moov.getLong(index);
+                        if (offset >= insertOffset && offset < moovOffset) {
+                            moov.putLong(index, offset + moovSize);
+                        }
+                    }
+                }
+                default -> {
+                }
+            }
+            position += size;
+        }
+        return true;
+    }
+
+    /**
+     * Entry count of a stco/co64 box, -1 when the table it announces is larger than the box.
+     */
+    private static long readEntries(ByteBuffer moov, int body, long end, int entrySize) {
+        if (body + 8 > end) {
+            return -1;
+        }
+        long entries = moov.getInt(body + 4) & 0xFFFFFFFFL;
+        return body + 8 + entries * entrySize <= end ? entries : -1;
+    }
+
+    private static void copy(FileChannel in, long position, long length, FileChannel out,
+                             MessageDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long end = position + length;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+            int read = in.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+            buffer.flip();
+            digest.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String fourcc(ByteBuffer buffer) {
+        byte[] bytes = new byte[4];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,365 @@
+package com.company.util;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reads duration, dimensions and codec tags from MP4/MOV and Matroska/WebM headers.
+ * Only box/element headers and the few metadata boxes are read; media data is skipped by seeking.
+ */
+@Slf4j
+public class MediaProbeUtil {
+
+    private static final int MAX_ELEMENTS = 10_000;
+
+    private static final int EBML_HEADER = 0x1A45DFA3;
+    private static final int MKV_SEGMENT = 0x18538067;
+    private static final int MKV_INFO = 0x1549A966;
+    private static final int MKV_TIMECODE_SCALE = 0x2AD7B1;
+    private static final int MKV_DURATION = 0x4489;
+    private static final int MKV_TRACKS = 0x1654AE6B;
+    private static final int MKV_TRACK_ENTRY = 0xAE;
+    private static final int MKV_CODEC_ID = 0x86;
+    private static final int MKV_VIDEO = 0xE0;
+    private static final int MKV_PIXEL_WIDTH = 0xB0;
+    private static final int MKV_PIXEL_HEIGHT = 0xBA;
+    private static final int MKV_CLUSTER = 0x1F43B675;
+
+
+    /**
+     * @return null when the file is not a supported container or its header is broken
+     */
+    public static MediaInfo probe(Path file, String extension) {
+        String lower = extension == null ? "" : extension.toLowerCase();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return switch (lower) {
+                case "mp4", "m4v", "mov", "3gp", "m4a" -> probeMp4(channel);
+                case "webm", "mkv" -> probeMatroska(channel);
+                default -> null;
+            };
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot probe {} {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /* ---------------- MP4 / MOV ---------------- */
+
+    private static MediaInfo probeMp4(FileChannel channel) throws IOException {
+        MediaInfo info = new MediaInfo();
+        walkMp4(channel, 0, channel.size(), info, new int[]{0}, new String[1]);
+        return info.getDurationMillis() == null ? null : info;
+    }
+
+    /**
+     * @param handler handler type of the current trak, hdlr is read before the stsd that it describes
+     */
+    private static void walkMp4(FileChannel channel, long start, long end, MediaInfo info,
+                                int[] count, String[] handler) throws IOException {
+        long position = start;
+        while (position + 8 <= end && count[0]++ < MAX_ELEMENTS) {
+            ByteBuffer header = read(channel, position, 16);
+            long size = header.getInt() & 0xFFFFFFFFL;
+            String type = fourcc(header);
+            int headerSize = 8;
+            if (size == 1) {
+                size = header.getLong();
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                return;
+            }
+            long body = position + headerSize;
+
+            switch (type) {
+                case "moov", "trak", "mdia", "minf", "stbl" -> walkMp4(channel, body, position + size, info, count, handler);
+                case "mvhd" -> readMvhd(read(channel, body, 32), info);
+                case "tkhd" -> readTkhd(channel, body, info);
+                case "hdlr" -> handler[0] = fourcc(read(channel, body + 8, 4));
+                case "stsd" -> {
+                    ByteBuffer entry = read(channel, body + 8, 8);
+                    entry.getInt();
+                    String codec = fourcc(entry).trim();
+                    info.addCodec(codec);
+                    if ("vide".equals(handler[0])) {
+                        info.setVideoCodec(codec);
+                    }
+                }
+                default -> {
+                }
+            }
+            if (type.equals("moov")) {
+                // everything needed lives in moov, the media data after it is not read
+                return;
+            }
+            position += size;
+        }
+    }
+
+    private static void readMvhd(ByteBuffer buffer, MediaInfo info) {
+        int version = buffer.get() & 0xFF;
+        long timescale;
+        long duration;
+        if (version == 1) {
+            buffer.position(4 + 16);
+            timescale = buffer.getInt() & 0xFFFFFFFFL;
+            duration = buffer.getLong();
+        } else {
+            buffer.position(4 + 8);
+            timescale = buffer.getInt() & 0xFFFFFFFFL;
+            duration = buffer.getInt() & 0xFFFFFFFFL;
+        }
+        if (timescale > 0) {
+            info.setDurationMillis(duration * 1000 / timescale);
+        }
+    }
+
+    private static void readTkhd(FileChannel channel, long body, MediaInfo info) throws IOException {
+        int version = read(channel, body, 1).get() & 0xFF;
+        ByteBuffer size = read(channel, body + (version == 1 ? 88 : 76), 8);
+        int width = size.getInt() >>> 16;
+        int height = size.getInt() >>> 16;
+        // audio tracks have zero dimensions
+        if (width > 0 && height > 0 && info.getWidth() == null) {
+            info.setWidth(width);
+            info.setHeight(height);
+        }
+    }
+
+    /* ---------------- Matroska / WebM ---------------- */
+
+    private static MediaInfo probeMatroska(FileChannel channel) throws IOException {
+        long[] element = readEbmlElement(channel, 0);
+        if (element == null || element[0] != EBML_HEADER) {
+            return null;
+        }
+        long position = element[2] + element[1];
+
+        element = readEbmlElement(channel, position);
+        if (element == null || element[0] != MKV_SEGMENT) {
+            return null;
+        }
+        long segmentEnd = element[1] < 0 ? channel.size() : Math.min(channel.size(), element[2] + element[1]);
+
+        MediaInfo info = new MediaInfo();
+        long timecodeScale = 1_000_000;
+        Double duration = null;
+        boolean tracksRead = false;
+
+        position = element[2];
+        int count = 0;
+        while (position < segmentEnd && count++ < MAX_ELEMENTS) {
+            element = readEbmlElement(channel, position);
+            if (element == null || element[0] == MKV_CLUSTER || element[1] < 0) {
+                break;
+            }
+            long body = element[2];
+            long end = body + element[1];
+
+            if (element[0] == MKV_INFO) {
+                for (long child = body; child < end; ) {
+                    long[] sub = readEbmlElement(channel, child);
+                    if (sub == null || sub[1] < 0) {
+                        break;
+                    }
+                    if (sub[0] == MKV_TIMECODE_SCALE) {
+                        timecodeScale = readUnsigned(channel, sub[2], (int) sub[1]);
+                    } else if (sub[0] == MKV_DURATION && (sub[1] == 4 || sub[1] == 8)) {
+                        // a float of 4 or 8 bytes, other sizes are broken and never read
+                        ByteBuffer value = read(channel, sub[2], (int) sub[1]);
+                        duration = sub[1] == 4 ? value.getFloat() : value.getDouble();
+                    }
+                    child = sub[2] + sub[1];
+                }
+            } else if (element[0] == MKV_TRACKS) {
+                readTracks(channel, body, end, info);
+                tracksRead = true;
+            }
+            if (duration != null && tracksRead) {
+                break;
+            }
+            position = end;
+        }
+
+        if (duration == null) {
+            return null;
+        }
+        info.setDurationMillis((long) (duration * timecodeScale / 1_000_000));
+        return info;
+    }
+
+    private static void readTracks(FileChannel channel, long start, long end, MediaInfo info) throws IOException {
+        for (long entry = start; entry < end; ) {
+            long[] track = readEbmlElement(channel, entry);
+            if (track == null || track[1] < 0) {
+                return;
+            }
+            if (track[0] == MKV_TRACK_ENTRY) {
+                String codec = null;
+                boolean video = false;
+                for (long child = track[2]; child < track[2] + track[1]; ) {
+                    long[] sub = readEbmlElement(channel, child);
+                    if (sub == null || sub[1] < 0) {
+                        break;
+                    }
+                    if (sub[0] == MKV_CODEC_ID) {
+                        codec = StandardCharsets.US_ASCII.decode(read(channel, sub[2],
+                                        (int) Math.min(sub[1], MediaInfo.CODEC_MAX_LENGTH)))
+                                .toString().trim();
+                    } else if (sub[0] == MKV_VIDEO) {
+                        video = true;
+                        readVideo(channel, sub[2], sub[2] + sub[1], info);
+                    }
+                    child = sub[2] + sub[1];
+                }
+                if (codec != null) {
+                    info.addCodec(codec);
+                    if (video) {
+                        info.setVideoCodec(codec);
+                    }
+                }
+            }
+            entry = track[2] + track[1];
+        }
+    }
+
+    private static void readVideo(FileChannel channel, long start, long end, MediaInfo info) throws IOException {
+        for (long child = start; child < end; ) {
+            long[] sub = readEbmlElement(channel, child);
+            if (sub == null || sub[1] < 0) {
+                return;
+            }
+            if (sub[0] == MKV_PIXEL_WIDTH && info.getWidth() == null) {
+                info.setWidth((int) readUnsigned(channel, sub[2], (int) sub[1]));
+            } else if (sub[0] == MKV_PIXEL_HEIGHT && info.getHeight() == null) {
+                info.setHeight((int) readUnsigned(channel, sub[2], (int) sub[1]));
+            }
+            child = sub[2] + sub[1];
+        }
+    }
+
+    /**
+     * @return {id, data size (-1 when unknown), data position} or null at end of file
+     */
+    private static long[] readEbmlElement(FileChannel channel, long position) throws IOException {
+        if (position >= channel.size()) {
+            return null;
+        }
+        ByteBuffer buffer = read(channel, position, (int) Math.min(12, channel.size() - position));
+
+        int first = buffer.get(0) & 0xFF;
+        int idLength = Integer.numberOfLeadingZeros(first) - 23;
+        if (first == 0 || idLength > 4 || idLength > buffer.limit()) {
+            return null;
+        }
+        long id = 0;
+        for (int i = 0; i < idLength; i++) {
+            id = (id << 8) | (buffer.get(i) & 0xFF);
+        }
+
+        if (idLength >= buffer.limit()) {
+            return null;
+        }
+        int sizeFirst = buffer.get(idLength) & 0xFF;
+        int sizeLength = Integer.numberOfLeadingZeros(sizeFirst) - 23;
+        if (sizeFirst == 0 || sizeLength > 8 || idLength + sizeLength > buffer.limit()) {
+            return null;
+        }
+        long size = sizeFirst & (0xFF >>> sizeLength);
+        boolean unknown = size == (0xFF >>> sizeLength);
+        for (int i = 1; i < sizeLength; i++) {
+            int b = buffer.get(idLength + i) & 0xFF;
+            unknown &= b == 0xFF;
+            size = (size << 8) | b;
+        }
+        return new long[]{id, unknown ? -1 : size, position + idLength + sizeLength};
+    }
+
+    private static long readUnsigned(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = read(channel, position, Math.min(length, 8));
+        long value = 0;
+        while (buffer.hasRemaining()) {
+            value = (value << 8) | (buffer.get() & 0xFF);
+        }
+        return value;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String fourcc(ByteBuffer buffer) {
+        byte[] bytes = new byte[4];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    public static class MediaInfo {
+
+        public static final int CODEC_MAX_LENGTH = 64;
+
+        private Long durationMillis;
+
+        private Integer width;
+
+        private Integer height;
+
+        private String videoCodec;
+
+        private final Set<String> codecs = new LinkedHashSet<>();
+
+        public void addCodec(String codec) {
+            if (!codec.isEmpty()) {
+                codecs.add(codec);
+            }
+        }
+
+        /**
+         * Video codec first, then the other tracks while they fit into {@value #CODEC_MAX_LENGTH} characters,
+         * the length of the attach column. Tracks are never cut in half.
+         */
+        public String getCodec() {
+            StringBuilder builder = new StringBuilder();
+            if (videoCodec != null) {
+                builder.append(videoCodec);
+            }
+            for (String codec : codecs) {
+                if (codec.equals(videoCodec)) {
+                    continue;
+                }
+                int length = builder.length() + (builder.length() > 0 ? 1 : 0) + codec.length();
+                if (length > CODEC_MAX_LENGTH) {
+                    continue;
+                }
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(codec);
+            }
+            return builder.length() == 0 ? null : builder.toString();
+        }
+    }
+}
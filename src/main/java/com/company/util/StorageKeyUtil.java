@@ -0,0 +1,33 @@
+package com.company.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.regex.Pattern;
+
+/**
+ * Attach files are fanned out over two levels of 256 directories, ab/cd/{name}, taken from the leading
+ * hex digits of the (uuid) file name. The older {year}/{month}/{day}/{name} keys map to the sharded key
+ * of the same name.
+ */
+public class StorageKeyUtil {
+
+    private static final Pattern SHARDED = Pattern.compile("^[0-9a-f]{2}/[0-9a-f]{2}/[^/]+$");
+    private static final Pattern HEX_PREFIX = Pattern.compile("^[0-9a-f]{4}.*");
+
+    public static String toShardedKey(String key) {
+        String name = getName(key);
+        String hex = name.replace("-", "").toLowerCase();
+        if (!HEX_PREFIX.matcher(hex).matches()) {
+            hex = DigestUtils.md5Hex(name);
+        }
+        return hex.substring(0, 2) + "/" + hex.substring(2, 4) + "/" + name;
+    }
+
+    public static boolean isSharded(String key) {
+        return SHARDED.matcher(key).matches();
+    }
+
+    public static String getName(String key) {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,37 @@
+package com.company.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalAttachStorageTest extends AttachStorageContractTest {
+
+    @Override
+    AttachStorage createStorage(Path folder) {
+        LocalAttachStorage storage = new LocalAttachStorage();
+        ReflectionTestUtils.setField(storage, "attachFolder", folder.resolve("attaches").toString());
+        ReflectionTestUtils.setField(storage, "rootNames",
+                new String[]{folder.resolve("disk1").toString(), folder.resolve("disk2").toString()});
+        storage.init();
+        return storage;
+    }
+
+    @Test
+    void renditionsFollowTheirOriginal() throws IOException {
+        storage.put("ab/cd/file.jpg", Files.writeString(folder.resolve("a.part"), "original"));
+        storage.put("ab/cd/file.jpg.w200.jpg", Files.writeString(folder.resolve("b.part"), "rendition"));
+
+        assertEquals(storage.getPath("ab/cd/file.jpg").getParent(),
+                storage.getPath("ab/cd/file.jpg.w200.jpg").getParent());
+    }
+
+    @Test
+    void keysCannotLeaveTheRoot() {
+        assertThrows(RuntimeException.class, () -> storage.getPath("../../etc/passwd"));
+    }
+}
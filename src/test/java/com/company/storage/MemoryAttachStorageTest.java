@@ -0,0 +1,11 @@
+package com.company.storage;
+
+import java.nio.file.Path;
+
+class MemoryAttachStorageTest extends AttachStorageContractTest {
+
+    @Override
+    AttachStorage createStorage(Path folder) {
+        return new MemoryAttachStorage();
+    }
+}
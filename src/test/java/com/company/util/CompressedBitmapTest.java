@@ -0,0 +1,145 @@
+package com.company.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedBitmapTest {
+
+    private static final int ARRAY_MAX = 4096;
+
+    @Test
+    void addAndRemoveAcrossArrayBitmapBoundary() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        // every other value, so the container holds ARRAY_MAX values before it turns into a bitmap
+        for (int i = 0; i < ARRAY_MAX; i++) {
+            bitmap.add(i * 2);
+        }
+        assertEquals(ARRAY_MAX, bitmap.cardinality());
+
+        bitmap.add(1);
+        bitmap.add(1);
+        assertEquals(ARRAY_MAX + 1, bitmap.cardinality());
+        assertTrue(bitmap.contains(1));
+        assertTrue(bitmap.contains((ARRAY_MAX - 1) * 2));
+        assertFalse(bitmap.contains(3));
+
+        // back to an array and over the boundary again
+        bitmap.remove(0);
+        bitmap.remove(0);
+        assertEquals(ARRAY_MAX, bitmap.cardinality());
+        assertFalse(bitmap.contains(0));
+        assertTrue(bitmap.contains(1));
+        assertTrue(bitmap.contains(2));
+        bitmap.add(0);
+        assertEquals(ARRAY_MAX + 1, bitmap.cardinality());
+        assertArrayEquals(new int[]{(ARRAY_MAX - 1) * 2, (ARRAY_MAX - 2) * 2}, bitmap.descending(0, 2));
+        assertArrayEquals(new int[]{2, 1, 0}, bitmap.descending(ARRAY_MAX - 2, 10));
+
+        for (int i = 0; i < ARRAY_MAX; i++) {
+            bitmap.remove(i * 2);
+        }
+        assertEquals(1, bitmap.cardinality());
+        assertArrayEquals(new int[]{1}, bitmap.descending(0, 10));
+    }
+
+    @Test
+    void keepsContainersApart() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        bitmap.add(65_535);
+        bitmap.add(65_536);
+        bitmap.add((5 << 16) | 7);
+        bitmap.add(Integer.MAX_VALUE);
+
+        assertTrue(bitmap.contains(65_535));
+        assertTrue(bitmap.contains(65_536));
+        assertFalse(bitmap.contains(7));
+        assertFalse(bitmap.contains((4 << 16) | 7));
+        assertTrue(bitmap.contains((5 << 16) | 7));
+
+        // emptying a middle container keeps the ones around it
+        bitmap.remove(65_536);
+        bitmap.remove(65_536);
+        assertFalse(bitmap.contains(65_536));
+        assertEquals(3, bitmap.cardinality());
+        assertArrayEquals(new int[]{Integer.MAX_VALUE, (5 << 16) | 7, 65_535}, bitmap.descending(0, 10));
+
+        bitmap.add(65_537);
+        assertArrayEquals(new int[]{(5 << 16) | 7, 65_537, 65_535}, bitmap.descending(1, 10));
+    }
+
+    @Test
+    void descendingSkipsWholeContainers() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // a bitmap container between two array containers
+        for (int high = 0; high < 3; high++) {
+            int count = high == 1 ? ARRAY_MAX + 100 : 50;
+            for (int i = 0; i < count; i++) {
+                int value = (high << 16) | (i * 3);
+                bitmap.add(value);
+                expected.add(value);
+            }
+        }
+
+        int total = expected.size();
+        long[] skips = {0, 49, 50, 51, 50 + ARRAY_MAX + 99, 50 + ARRAY_MAX + 100, total - 1, total, total + 10};
+        for (long skip : skips) {
+            for (int limit : new int[]{1, 3, 200}) {
+                assertArrayEquals(descending(expected, skip, limit), bitmap.descending(skip, limit),
+                        "skip " + skip + " limit " + limit);
+            }
+        }
+    }
+
+    @Test
+    void matchesSetAfterRandomChanges() {
+        Random random = new Random(42);
+        CompressedBitmap left = new CompressedBitmap();
+        CompressedBitmap right = new CompressedBitmap();
+        TreeSet<Integer> leftSet = new TreeSet<>();
+        TreeSet<Integer> rightSet = new TreeSet<>();
+        for (int i = 0; i < 60_000; i++) {
+            // container 0 dense on both sides, 1 dense on the left only, 2 sparse
+            int high = random.nextInt(3);
+            int value = (high << 16) | random.nextInt(high == 2 ? 65_536 : 8192);
+            boolean onLeft = random.nextBoolean() || high == 1;
+            CompressedBitmap bitmap = onLeft ? left : right;
+            TreeSet<Integer> set = onLeft ? leftSet : rightSet;
+            if (random.nextInt(4) == 0) {
+                bitmap.remove(value);
+                set.remove(value);
+            } else {
+                bitmap.add(value);
+                set.add(value);
+            }
+        }
+        assertEquals(leftSet.size(), left.cardinality());
+        assertEquals(rightSet.size(), right.cardinality());
+
+        TreeSet<Integer> and = new TreeSet<>(leftSet);
+        and.retainAll(rightSet);
+        TreeSet<Integer> or = new TreeSet<>(leftSet);
+        or.addAll(rightSet);
+
+        assertArrayEquals(descending(leftSet, 0, leftSet.size()), left.descending(0, leftSet.size()));
+        assertArrayEquals(descending(and, 0, and.size()), left.and(right).descending(0, and.size()));
+        assertArrayEquals(descending(and, 0, and.size()), right.and(left).descending(0, and.size()));
+        assertArrayEquals(descending(or, 0, or.size()), left.or(right).descending(0, or.size()));
+        assertArrayEquals(descending(or, 0, or.size()), right.or(left).descending(0, or.size()));
+
+        // results do not share containers with their inputs
+        CompressedBitmap union = left.or(right);
+        union.add(3 << 16);
+        union.remove(leftSet.first());
+        assertFalse(left.contains(3 << 16));
+        assertTrue(left.contains(leftSet.first()));
+    }
+
+    private static int[] descending(TreeSet<Integer> set, long skip, int limit) {
+        return set.descendingSet().stream().skip(skip).limit(limit).mapToInt(Integer::intValue).toArray();
+    }
+}
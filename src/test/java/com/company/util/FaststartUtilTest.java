@@ -0,0 +1,140 @@
+package com.company.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FaststartUtilTest {
+
+    private static final long MAX_MOOV = 1024 * 1024;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void movesMoovInFrontAndShiftsOffsets() throws IOException {
+        byte[] ftyp = box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII));
+        byte[] payload = new byte[1000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        byte[] mdat = box("mdat", payload);
+        int chunk0 = ftyp.length + 8;
+        int chunk1 = chunk0 + 500;
+        byte[] moov = moov(stco(chunk0, chunk1), co64(chunk0, chunk1));
+        Path source = write("source.mp4", concat(ftyp, mdat, moov));
+        Path target = folder.resolve("target.mp4");
+
+        String checksum = FaststartUtil.faststart(source, target, MAX_MOOV);
+
+        byte[] result = Files.readAllBytes(target);
+        assertEquals(DigestUtils.sha256Hex(result), checksum);
+        assertEquals(ftyp.length + moov.length + mdat.length, result.length);
+        assertArrayEquals(ftyp, Arrays.copyOfRange(result, 0, ftyp.length));
+        assertEquals("moov", type(result, ftyp.length));
+        assertArrayEquals(mdat, Arrays.copyOfRange(result, ftyp.length + moov.length, result.length));
+
+        ByteBuffer buffer = ByteBuffer.wrap(result);
+        int stco = indexOf(result, "stco");
+        assertEquals(2, buffer.getInt(stco + 12));
+        assertEquals(chunk0 + moov.length, buffer.getInt(stco + 16));
+        assertEquals(chunk1 + moov.length, buffer.getInt(stco + 20));
+        int co64 = indexOf(result, "co64");
+        assertEquals(chunk0 + moov.length, buffer.getLong(co64 + 16));
+        assertEquals(chunk1 + moov.length, buffer.getLong(co64 + 24));
+
+        // the shifted offsets point at the same bytes as before
+        assertEquals(payload[500], result[chunk1 + moov.length]);
+    }
+
+    @Test
+    void keepsFaststartFile() throws IOException {
+        byte[] ftyp = box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII));
+        Path source = write("source.mp4", concat(ftyp, moov(stco(100)), box("mdat", new byte[100])));
+
+        assertNull(FaststartUtil.faststart(source, folder.resolve("target.mp4"), MAX_MOOV));
+    }
+
+    @Test
+    void rejectsOffsetTableLargerThanBox() throws IOException {
+        byte[] ftyp = box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII));
+        byte[] stco = stco(ftyp.length + 8);
+        // announces a million entries in a box holding one
+        ByteBuffer.wrap(stco).putInt(12, 1_000_000);
+        Path source = write("source.mp4", concat(ftyp, box("mdat", new byte[100]), moov(stco)));
+
+        assertNull(FaststartUtil.faststart(source, folder.resolve("target.mp4"), MAX_MOOV));
+    }
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(folder.resolve(name), bytes);
+    }
+
+    private static byte[] moov(byte[]... tables) {
+        return box("moov", box("trak", box("mdia", box("minf", box("stbl", tables)))));
+    }
+
+    private static byte[] stco(int... offsets) {
+        ByteBuffer body = ByteBuffer.allocate(8 + offsets.length * 4);
+        body.putInt(0);
+        body.putInt(offsets.length);
+        for (int offset : offsets) {
+            body.putInt(offset);
+        }
+        return box("stco", body.array());
+    }
+
+    private static byte[] co64(long... offsets) {
+        ByteBuffer body = ByteBuffer.allocate(8 + offsets.length * 8);
+        body.putInt(0);
+        body.putInt(offsets.length);
+        for (long offset : offsets) {
+            body.putLong(offset);
+        }
+        return box("co64", body.array());
+    }
+
+    private static byte[] box(String type, byte[]... children) {
+        byte[] body = concat(children);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + body.length);
+        buffer.putInt(8 + body.length);
+        buffer.put(type.getBytes(StandardCharsets.US_ASCII));
+        buffer.put(body);
+        return buffer.array();
+    }
+
+    private static String type(byte[] bytes, int position) {
+        return new String(bytes, position + 4, 4, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Position of the box with the type, the type itself is 4 bytes further.
+     */
+    private static int indexOf(byte[] bytes, String type) {
+        byte[] needle = type.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 4; i + needle.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + needle.length, needle, 0, needle.length)) {
+                return i - 4;
+            }
+        }
+        return fail("No " + type);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,75 @@
+package com.company.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogUtilTest {
+
+    // about three standard errors of a 2^12 register sketch
+    private static final double MAX_ERROR = 0.05;
+
+    @Test
+    void estimateSmall() {
+        assertEstimate(100, estimate(0, 100));
+    }
+
+    @Test
+    void estimateMedium() {
+        assertEstimate(10_000, estimate(0, 10_000));
+    }
+
+    @Test
+    void estimateLarge() {
+        assertEstimate(1_000_000, estimate(0, 1_000_000));
+    }
+
+    @Test
+    void repeatedValuesCountOnce() {
+        byte[] registers = HyperLogLogUtil.create();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 1000; i++) {
+                HyperLogLogUtil.add(registers, "viewer-" + i);
+            }
+        }
+        assertEstimate(1000, HyperLogLogUtil.estimate(registers));
+    }
+
+    @Test
+    void mergeEstimatesTheUnion() {
+        byte[] first = sketch(0, 600_000);
+        byte[] second = sketch(400_000, 1_000_000);
+
+        HyperLogLogUtil.merge(first, second);
+
+        assertEstimate(1_000_000, HyperLogLogUtil.estimate(first));
+    }
+
+    @Test
+    void mergeOfEmptySketchChangesNothing() {
+        byte[] registers = sketch(0, 10_000);
+        long before = HyperLogLogUtil.estimate(registers);
+
+        HyperLogLogUtil.merge(registers, HyperLogLogUtil.create());
+
+        assertEquals(before, HyperLogLogUtil.estimate(registers));
+        assertEquals(0, HyperLogLogUtil.estimate(HyperLogLogUtil.create()));
+    }
+
+    private static long estimate(int from, int to) {
+        return HyperLogLogUtil.estimate(sketch(from, to));
+    }
+
+    private static byte[] sketch(int from, int to) {
+        byte[] registers = HyperLogLogUtil.create();
+        for (int i = from; i < to; i++) {
+            HyperLogLogUtil.add(registers, "viewer-" + i);
+        }
+        return registers;
+    }
+
+    private static void assertEstimate(long expected, long estimate) {
+        double error = Math.abs(estimate - expected) / (double) expected;
+        assertTrue(error <= MAX_ERROR, "estimate " + estimate + " of " + expected + " is off by " + error);
+    }
+}
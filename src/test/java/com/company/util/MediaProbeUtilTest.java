@@ -0,0 +1,185 @@
+package com.company.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaProbeUtilTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void probeMp4() throws IOException {
+        byte[] video = box("trak",
+                tkhd(1280, 720),
+                box("mdia",
+                        hdlr("vide"),
+                        box("minf", box("stbl", stsd("avc1")))));
+        byte[] audio = box("trak",
+                tkhd(0, 0),
+                box("mdia",
+                        hdlr("soun"),
+                        box("minf", box("stbl", stsd("mp4a")))));
+        byte[] file = concat(box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII)),
+                box("moov", mvhd(1000, 90_500), audio, video),
+                box("mdat", new byte[1024]));
+
+        MediaProbeUtil.MediaInfo info = MediaProbeUtil.probe(write("a.mp4", file), "mp4");
+
+        assertNotNull(info);
+        assertEquals(90_500L, info.getDurationMillis());
+        assertEquals(1280, info.getWidth());
+        assertEquals(720, info.getHeight());
+        assertEquals("avc1", info.getVideoCodec());
+        assertEquals("avc1,mp4a", info.getCodec());
+    }
+
+    @Test
+    void probeMp4WithoutMoov() throws IOException {
+        byte[] file = concat(box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII)), box("mdat", new byte[64]));
+
+        assertNull(MediaProbeUtil.probe(write("a.mp4", file), "mp4"));
+    }
+
+    @Test
+    void probeMatroska() throws IOException {
+        byte[] info = ebml(0x1549A966,
+                ebml(0x2AD7B1, 0x0F, 0x42, 0x40),
+                ebml(0x4489, ByteBuffer.allocate(8).putDouble(12_345).array()));
+        byte[] tracks = ebml(0x1654AE6B,
+                ebml(0xAE,
+                        ebml(0x86, "V_VP9".getBytes(StandardCharsets.US_ASCII)),
+                        ebml(0xE0, ebml(0xB0, 0x07, 0x80), ebml(0xBA, 0x04, 0x38))),
+                ebml(0xAE, ebml(0x86, "A_OPUS".getBytes(StandardCharsets.US_ASCII))));
+        byte[] file = concat(ebml(0x1A45DFA3, ebml(0x4282, "webm".getBytes(StandardCharsets.US_ASCII))),
+                ebml(0x18538067, info, tracks, ebml(0x1F43B675, new byte[32])));
+
+        MediaProbeUtil.MediaInfo media = MediaProbeUtil.probe(write("a.webm", file), "webm");
+
+        assertNotNull(media);
+        // timecode scale of 1 ms, the duration counts milliseconds
+        assertEquals(12_345L, media.getDurationMillis());
+        assertEquals(1920, media.getWidth());
+        assertEquals(1080, media.getHeight());
+        assertEquals("V_VP9,A_OPUS", media.getCodec());
+    }
+
+    @Test
+    void probeMatroskaRejectsHugeDuration() throws IOException {
+        // Duration claiming 2^31 - 2 bytes of data
+        byte[] duration = concat(new byte[]{0x44, (byte) 0x89, 0x08, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFE},
+                new byte[8]);
+        byte[] file = concat(ebml(0x1A45DFA3, ebml(0x4282, "webm".getBytes(StandardCharsets.US_ASCII))),
+                ebml(0x18538067, ebml(0x1549A966, duration)));
+
+        assertNull(MediaProbeUtil.probe(write("a.mkv", file), "mkv"));
+    }
+
+    @Test
+    void codecKeepsWholeTracksWithinColumn() {
+        MediaProbeUtil.MediaInfo info = new MediaProbeUtil.MediaInfo();
+        info.addCodec("A_AAC");
+        info.addCodec("V_MPEGH/ISO/HEVC");
+        info.setVideoCodec("V_MPEGH/ISO/HEVC");
+        info.addCodec("A_AC3");
+        info.addCodec("A_DTS");
+        info.addCodec("S_TEXT/UTF8");
+        info.addCodec("S_HDMV/PGS");
+        info.addCodec("A_TRUEHD");
+        info.addCodec("S_TEXT/ASS");
+
+        String codec = info.getCodec();
+
+        assertTrue(codec.length() <= MediaProbeUtil.MediaInfo.CODEC_MAX_LENGTH);
+        assertTrue(codec.startsWith("V_MPEGH/ISO/HEVC,A_AAC,"));
+        for (String track : codec.split(",")) {
+            assertTrue(info.getCodecs().contains(track));
+        }
+    }
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(folder.resolve(name), bytes);
+    }
+
+    private static byte[] mvhd(int timescale, int duration) {
+        ByteBuffer body = ByteBuffer.allocate(100);
+        body.position(12);
+        body.putInt(timescale);
+        body.putInt(duration);
+        return box("mvhd", body.array());
+    }
+
+    private static byte[] tkhd(int width, int height) {
+        ByteBuffer body = ByteBuffer.allocate(84);
+        body.position(76);
+        body.putInt(width << 16);
+        body.putInt(height << 16);
+        return box("tkhd", body.array());
+    }
+
+    private static byte[] hdlr(String handler) {
+        ByteBuffer body = ByteBuffer.allocate(24);
+        body.position(8);
+        body.put(handler.getBytes(StandardCharsets.US_ASCII));
+        return box("hdlr", body.array());
+    }
+
+    private static byte[] stsd(String codec) {
+        ByteBuffer body = ByteBuffer.allocate(16);
+        body.putInt(0);
+        body.putInt(1);
+        body.putInt(8);
+        body.put(codec.getBytes(StandardCharsets.US_ASCII));
+        return box("stsd", body.array());
+    }
+
+    private static byte[] box(String type, byte[]... children) {
+        byte[] body = concat(children);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + body.length);
+        buffer.putInt(8 + body.length);
+        buffer.put(type.getBytes(StandardCharsets.US_ASCII));
+        buffer.put(body);
+        return buffer.array();
+    }
+
+    /**
+     * EBML element with the data size written as an 8 byte vint.
+     */
+    private static byte[] ebml(int id, byte[]... children) {
+        byte[] body = concat(children);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 + body.length);
+        int idLength = 4 - Integer.numberOfLeadingZeros(id) / 8;
+        for (int i = idLength - 1; i >= 0; i--) {
+            buffer.put((byte) (id >>> (i * 8)));
+        }
+        buffer.putLong(0x0100_0000_0000_0000L | body.length);
+        buffer.put(body);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static byte[] ebml(int id, int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return ebml(id, new byte[][]{bytes});
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}